@@ -15,6 +15,13 @@
             : Modified by Ladislav Foldyna OK1MLG 2018
 
             : OK1MLG Versions Changelog:
+               3.5lf - '!' new option - a running sweep is aborted
+                       by any received byte
+               3.4lf - 'u' new option - serial baud rate change
+               3.3lf - 'd' new option - DDS settle time
+                       'm' new option - analog samples per sweep point
+                       (calibration 'c'/'f' does not use it)
+               3.2lf - 'x' new option - sweep with binary output
                3.1lf - added calibration support,
                        variable type optimalizations
                        't' option was removed
@@ -27,7 +34,7 @@
                        added a command confirmation string "#OK#"
   \***************************************************************************/
 
-const char  SoftwareVersion[] = "Version: 3.1lf";
+const char  SoftwareVersion[] = "Version: 3.5lf";
 
 #define pulseHigh(pin) {digitalWrite(pin, HIGH); digitalWrite(pin, LOW); }
 
@@ -96,6 +103,25 @@ const PolynomCoefs calib_coefs[NUM_CALIBRATION_INTERVALS] =
 // Number of samples used by an analog input calibration procedure
 #define CALIBRATION_SAMPLE_SZ 16
 
+// Delay between RAW SWR samples of a calibration point ('c', 'f') in ms
+#define CALIBRATION_SAMPLE_DELAY 100
+
+// Escape byte of binary sweep frames
+#define FRAME_ESCAPE 0x1B
+
+// Aborts a running sweep ('s', 'x'); any other byte aborts it as well
+#define ABORT_CHAR '!'
+
+// Serial baud rate after reset
+#define DEFAULT_BAUD_RATE 57600
+
+// How long the new baud rate waits for a confirmation ('u' command)
+#define BAUD_CONFIRM_TIMEOUT 1000
+
+// Default and max DDS settle time in ms ('d' command)
+#define DEFAULT_SETTLE_TIME 200
+#define MAX_SETTLE_TIME 2000
+
 /* ================ DO NOT CHANGE THESE CONSTANTS ================*/
 // board mapping
 const uint8_t SCLK  = 12;
@@ -111,6 +137,10 @@ unsigned int num_steps = 100;            // Number of steps to use in the sweep
 int offset_forward = 0;      // analog input voltage offset - used for voltage correction
 int offset_reverse = 0;      // analog input voltage offset - used for voltage correction
 
+unsigned long baud_rate = DEFAULT_BAUD_RATE;     // current serial baud rate
+unsigned int settle_time = DEFAULT_SETTLE_TIME;  // wait time after DDS frequency change in ms
+byte num_samples = 1;                            // analog samples per sweep point (median is used)
+
 /* ================  END OF "DO NOT CHANGE THESE CONSTANTS ================*/
 
 /***************
@@ -133,7 +163,7 @@ void setup()
   analogReference(INTERNAL); // ref voltage = 1,1 volt
 
   // initialize serial communication at 57600 baud
-  Serial.begin(57600);
+  Serial.begin(DEFAULT_BAUD_RATE);
 
   // Reset the DDS
   pulseHigh(RESET);
@@ -250,6 +280,42 @@ void interpreter(char rxd)
       endOfCommand();
       break;
 
+    /***********************************
+     * Set DDS settle time in ms
+     *
+     * Example: 20D
+     */
+    case 'D':
+    case 'd':
+      settle_time = (serial_input_number > MAX_SETTLE_TIME) ? MAX_SETTLE_TIME : serial_input_number;
+      serial_input_number = 0L;
+      endOfCommand();
+      break;
+
+    /***********************************
+     * Set number of analog samples
+     * per measurement
+     *
+     * Example: 8M
+     */
+    case 'M':
+    case 'm':
+      num_samples = constrain(serial_input_number, 1, CALIBRATION_SAMPLE_SZ);
+      serial_input_number = 0L;
+      endOfCommand();
+      break;
+
+    /***********************************
+     * Change serial baud rate
+     *
+     * Example: 500000U
+     */
+    case 'U':
+    case 'u':
+      change_baud_rate(serial_input_number);
+      serial_input_number = 0L;
+      break;
+
     /**************
      * Start Sweep
      */
@@ -259,6 +325,15 @@ void interpreter(char rxd)
       endOfCommand();
       break;
 
+    /*****************************
+     * Start Sweep - binary output
+     */
+    case 'X':
+    case 'x':
+      perform_sweep_binary();
+      endOfCommand();
+      break;
+
     case 'R':
     case 'r':
       calc_analog_input_offsets();
@@ -293,6 +368,59 @@ void interpreter(char rxd)
   }
 }
 
+/************************************************************************
+ * Changes serial baud rate
+ *
+ * Supported rates are 57600, 115200, 250000, 500000 and 1000000; they
+ * have low error with 16MHz clock. The function sends the new rate
+ *
+ * Baud: <RATE>
+ *
+ * and "#OK#" at the current rate, then it switches. The new rate has to be
+ * confirmed by 'v' command within BAUD_CONFIRM_TIMEOUT, otherwise the
+ * previous rate is used again. An unsupported rate is not changed and
+ * the current rate is sent.
+ *
+ * Input: rate - requested baud rate
+ ************************************************************************/
+void change_baud_rate( unsigned long rate )
+{
+  unsigned long start = 0L;
+
+  if ( rate != 57600 && rate != 115200 && rate != 250000 && rate != 500000 && rate != 1000000 )
+  {
+    rate = baud_rate;
+  }
+
+  Serial.print("Baud: ");
+  Serial.println(rate);
+  endOfCommand();
+
+  if ( rate == baud_rate )
+  {
+    return;
+  }
+
+  Serial.end();
+  Serial.begin(rate);
+
+  start = millis();
+  while ( Serial.available() == 0 && millis() - start < BAUD_CONFIRM_TIMEOUT )
+  {
+    // wait for the confirmation
+  }
+
+  // 'v' is left in the buffer; loop() processes it at the new rate
+  if ( Serial.peek() == 'v' || Serial.peek() == 'V' )
+  {
+    baud_rate = rate;
+    return;
+  }
+
+  Serial.end();
+  Serial.begin(baud_rate);
+}
+
 /************************************************
  * Validates input frequency
  *
@@ -329,6 +457,10 @@ void sweep_info( void )
   Serial.println(freq_stop);
   Serial.print("Num Steps:\t\t");
   Serial.println(num_steps);
+  Serial.print("Settle Time:\t\t");
+  Serial.println(settle_time);
+  Serial.print("Num Samples:\t\t");
+  Serial.println(num_samples);
   Serial.print("Analog Offset FWD:\t");
   Serial.println(offset_forward);
   Serial.print("Analog Offset REV:\t");
@@ -362,13 +494,18 @@ void help( void )
   Serial.println("'a'\tset start frequency\t6000000a\t6.000 Mhz");
   Serial.println("'b'\tset end frequency\t8000000b\t8.000 Mhz");
   Serial.println("'c'\tsweep const. frequency\t7032000c\t7.032 Mhz");
+  Serial.println("'d'\tset DDS settle time\t20d\t\t20 ms");
   Serial.println("'f'\tcalibration \t\t300f\t\tusing 300ohm dummy load");
+  Serial.println("'m'\tset analog samples\t8m\t\tmedian of 8 samples");
   Serial.println("'n'\tset number of steps\t100n\t\t100 steps");
+  Serial.println("'u'\tchange baud rate\t500000u\t\tconfirm by 'v' within 1s");
   Serial.println("'s'\tperform sweep from frequency a to b with n steps");
+  Serial.println("'x'\tthe same as 's' but binary output");
   Serial.println("'r'\tre-calibration of analog inputs");
   Serial.println("'?'\tsweep info");
   Serial.println("'h'\thelp");
   Serial.println("'v'\tsoftware version");
+  Serial.println("'!'\tabort running sweep");
 
 }
 
@@ -442,6 +579,31 @@ void calc_analog_input_offsets( void )
   offset_forward =  median(CALIBRATION_SAMPLE_SZ, samples_for);
 }
 
+/***********************************************************************
+ * it reads forward and reverse voltages without offsets
+ *
+ * When more samples are requested, the median of the samples is returned.
+ *
+ * Input:
+ * samples = number of samples, 1 .. CALIBRATION_SAMPLE_SZ
+ * fwd = output parameter - FWD value
+ * rev = output parameter - REV value
+ ***********************************************************************/
+void read_analog_inputs( byte samples, int *fwd, int *rev )
+{
+  int samples_rev[CALIBRATION_SAMPLE_SZ];
+  int samples_for[CALIBRATION_SAMPLE_SZ];
+
+  for ( byte i = 0; i < samples; i++ )
+  {
+    samples_rev[i] = analogRead(A0);
+    samples_for[i] = analogRead(A1);
+  }
+
+  *rev = median(samples, samples_rev) - offset_reverse;
+  *fwd = median(samples, samples_for) - offset_forward;
+}
+
 /***********************************************************************
  * it measures and computes SWR
  *
@@ -457,6 +619,7 @@ void calc_analog_input_offsets( void )
  *
  * Input:
  * freq = input frequency
+ * samples = analog samples of the measurement (see read_analog_inputs)
  * fwd = output parameter - raw FWD value
  * rev = output parameter - raw REV value
  * raw_swr = output parameter - raw SWR value
@@ -464,7 +627,7 @@ void calc_analog_input_offsets( void )
  * Return: calibrated SWR
  *
  ***********************************************************************/
-float measure_swr( unsigned long freq, int *fwd, int *rev, float *raw_swr )
+float measure_swr( unsigned long freq, byte samples, int *fwd, int *rev, float *raw_swr )
 {
   float swr = 0.0;
   byte coef_index = 0;
@@ -472,8 +635,7 @@ float measure_swr( unsigned long freq, int *fwd, int *rev, float *raw_swr )
   *raw_swr = 0.0;
 
   // Read the forawrd and reverse voltages
-  *rev = analogRead(A0) - offset_reverse;
-  *fwd = analogRead(A1) - offset_forward;
+  read_analog_inputs(samples, fwd, rev);
 
   if ( *rev >= *fwd )
   {
@@ -535,6 +697,9 @@ float measure_swr( unsigned long freq, int *fwd, int *rev, float *raw_swr )
  * Sweeping one frequency.
  * it takes samples of RAW SWR and computes a final SWR as a median of RAW SWR samples
  *
+ * Each sample is one analog reading; the samples per sweep point ('m'
+ * command) do not change stored calibration data.
+ *
  * The function sends output numbers in following format via Serial Port:
  *
  * <FREQ, MEDIA(RAW_SWRs)>
@@ -554,8 +719,8 @@ void frequency_sweep( unsigned long freq )
   for ( byte i = 0 ; i < CALIBRATION_SAMPLE_SZ; i++ )
   {
      /* !!!! we uses only a raw value of SWR for calibration !!!!*/
-     measure_swr(freq, &fwd_analog_value, &rev_analog_value, swr_samples + i);
-     delay(100);
+     measure_swr(freq, 1, &fwd_analog_value, &rev_analog_value, swr_samples + i);
+     delay(CALIBRATION_SAMPLE_DELAY);
   }
 
   dds_off();
@@ -589,7 +754,7 @@ void perform_sweep( void )
   unsigned long freq_step = (freq_stop - freq_start) / num_steps;
 
 
-  for ( unsigned int i = 0; i <= num_steps; i++ )
+  for ( unsigned int i = 0; i <= num_steps && !sweep_aborted(); i++ )
   {
     // Calculate current frequency
     curr_freq = freq_start + (i * freq_step);
@@ -603,7 +768,7 @@ void perform_sweep( void )
 
     Serial.print(curr_freq);
     Serial.print(", ");
-    Serial.print(measure_swr(curr_freq, &fwd_analog_value, &rev_analog_value, &raw_swr), 2);
+    Serial.print(measure_swr(curr_freq, num_samples, &fwd_analog_value, &rev_analog_value, &raw_swr), 2);
     Serial.print(", ");
     Serial.print(fwd_analog_value);
     Serial.print(", ");
@@ -617,6 +782,135 @@ void perform_sweep( void )
   Serial.flush();
 }
 
+/************************************************************************
+ * Checks whether the client wants to stop the sweep
+ *
+ * It is called before each point, therefore the sweep stops within one
+ * point time (DDS settle time + analog samples). ABORT_CHAR is consumed,
+ * other bytes stay for the interpreter. The sweep is finished by "#OK#"
+ * as usual.
+ *
+ * Return: true if a byte was received
+ ************************************************************************/
+bool sweep_aborted( void )
+{
+  if ( Serial.available() == 0 )
+  {
+    return false;
+  }
+
+  if ( Serial.peek() == ABORT_CHAR )
+  {
+    Serial.read();
+  }
+
+  return true;
+}
+
+/************************************************************************
+ * CRC-16/CCITT-FALSE (poly 0x1021, init 0xFFFF)
+ *
+ * Input: crc - current CRC
+ *        data - next byte
+ *
+ * Return: updated CRC
+ ************************************************************************/
+uint16_t crc16_update( uint16_t crc, byte data )
+{
+  crc ^= (uint16_t)data << 8;
+
+  for ( byte i = 0; i < 8; i++ )
+  {
+    crc = (crc & 0x8000) ? (crc << 1) ^ 0x1021 : (crc << 1);
+  }
+
+  return crc;
+}
+
+/************************************************************************
+ * Sends one byte of binary frame
+ *
+ * Bytes '\n', '\r' and ESC are sent as ESC, byte ^ 0x20, therefore
+ * each frame is one line and the client can resync after a lost byte.
+ ************************************************************************/
+void send_frame_byte( byte data )
+{
+  if ( data == '\n' || data == '\r' || data == FRAME_ESCAPE )
+  {
+    Serial.write(FRAME_ESCAPE);
+    data ^= 0x20;
+  }
+  Serial.write(data);
+}
+
+/************************************************************************
+ * Sweeping frequency range - binary output
+ *
+ * The function sends a header line
+ *
+ * #BIN <FREQ_START>,<FREQ_STEP>,<POINTS>
+ *
+ * and then one frame per point. A frame has 12 bytes (little-endian)
+ * terminated by '\n' (see send_frame_byte):
+ *
+ * <SEQ:u16, SWR*100:u16, ANALOG_FWD:i16, ANALOG_REV:i16,
+ *  RAW_SWR*1000:u16, CRC16:u16>
+ *
+ * where CRC is computed from the first 10 bytes and the frequency is
+ * FREQ_START + SEQ * FREQ_STEP
+ ************************************************************************/
+void perform_sweep_binary( void )
+{
+  int fwd_analog_value = 0;
+  int rev_analog_value = 0;
+  float raw_swr = 0.0;
+  float swr = 0.0;
+  unsigned long curr_freq = 0L;
+  unsigned long freq_step = (freq_stop - freq_start) / num_steps;
+  uint16_t values[5];
+  uint16_t crc;
+
+  Serial.print("#BIN ");
+  Serial.print(freq_start);
+  Serial.print(",");
+  Serial.print(freq_step);
+  Serial.print(",");
+  Serial.println(num_steps + 1);
+
+  for ( unsigned int i = 0; i <= num_steps && !sweep_aborted(); i++ )
+  {
+    // Calculate current frequency
+    curr_freq = freq_start + (i * freq_step);
+
+    // Set DDS to current frequency
+    SetDDSFreq(curr_freq);
+
+    swr = measure_swr(curr_freq, num_samples, &fwd_analog_value, &rev_analog_value, &raw_swr);
+
+    values[0] = i;
+    values[1] = (uint16_t)(swr * 100.0 + 0.5);
+    values[2] = (uint16_t)fwd_analog_value;
+    values[3] = (uint16_t)rev_analog_value;
+    values[4] = (uint16_t)(raw_swr * 1000.0 + 0.5);
+
+    crc = 0xFFFF;
+    for ( byte v = 0; v < 5; v++ )
+    {
+      crc = crc16_update(crc, values[v] & 0xFF);
+      crc = crc16_update(crc, values[v] >> 8);
+      send_frame_byte(values[v] & 0xFF);
+      send_frame_byte(values[v] >> 8);
+    }
+    send_frame_byte(crc & 0xFF);
+    send_frame_byte(crc >> 8);
+    Serial.write('\n');
+  }
+
+  dds_off();
+
+  Serial.flush();
+}
+
 /*****************************
  * Set DDS Frequency
  *
@@ -638,7 +932,7 @@ void SetDDSFreq( unsigned long freq )
   // Done. Inform DDS
   pulseHigh(FQ_UD);
 
-  delay(200);
+  delay(settle_time);
 }
 
 /*******************
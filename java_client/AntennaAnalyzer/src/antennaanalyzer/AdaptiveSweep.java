@@ -0,0 +1,141 @@
+/*
+ * AdaptiveSweep
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Two-stage sweep which zooms in on the resonance
+ *
+ * The first (coarse) sweep covers the whole range. The second (dense) sweep
+ * covers only the two coarse steps around the SWR minimum. Both sweeps use
+ * the usual a/b/n/s commands and their points are merged to one sweep in
+ * frequency order.
+ *
+ * E.g. 50 coarse steps and 50 zoom steps give the same resolution around
+ * the resonance as 1250 steps over the whole range with 102 points only.
+ *
+ * The object keeps buffers for the next sweeps; it is not thread-safe.
+ */
+public class AdaptiveSweep {
+
+	private final SweepData coarse = new SweepData();
+	private final SweepData zoom = new SweepData();
+
+	/**
+	 * Performs the coarse and the zoom sweep
+	 *
+	 * The listener gets the coarse points first and then the zoom points,
+	 * therefore the points do not come in frequency order.
+	 *
+	 * @param arduino
+	 *            connected analyzer
+	 * @param startFreq
+	 *            in Hz
+	 * @param stopFreq
+	 *            in Hz
+	 * @param coarseSteps
+	 *            steps of the whole range
+	 * @param zoomSteps
+	 *            steps around the minimum
+	 * @param pointTimeout
+	 *            max wait time for each point in ms
+	 * @param data
+	 *            merged sweep; it is cleaned before the sweep
+	 * @param listener
+	 *            can be null
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws TimeoutException
+	 */
+	public void performSweep(ArduinoAnalyzerCom arduino, long startFreq, long stopFreq, int coarseSteps,
+			int zoomSteps, int pointTimeout, SweepData data, SweepListener listener)
+			throws IOException, InterruptedException, ExecutionException, TimeoutException {
+
+		data.clear();
+		zoom.clear();
+
+		arduino.performSweep(startFreq, stopFreq, coarseSteps, pointTimeout, coarse, listener);
+
+		if (coarse.size() == 0) {
+			return;
+		}
+
+		/* zoom range - neighbours of the minimum */
+		int min = 0;
+
+		for (int index = 1; index < coarse.size(); index++) {
+			if (coarse.getSWR(index) < coarse.getSWR(min)) {
+				min = index;
+			}
+		}
+
+		long zoomStart = coarse.getFreq(Math.max(min - 1, 0));
+		long zoomStop = coarse.getFreq(Math.min(min + 1, coarse.size() - 1));
+
+		/* the step cannot be lower than 1 Hz */
+		zoomSteps = (int) Math.min(zoomSteps, zoomStop - zoomStart);
+
+		if (zoomSteps > 0) {
+			arduino.performSweep(zoomStart, zoomStop, zoomSteps, pointTimeout, zoom, listener);
+		}
+
+		merge(data);
+	}
+
+	/**
+	 * It merges coarse and zoom points; zoom points replace coarse points in
+	 * the zoom range
+	 *
+	 * @param out
+	 */
+	private void merge(SweepData out) {
+		long zoomStart = (zoom.size() > 0) ? zoom.getFreq(0) : Long.MAX_VALUE;
+		long zoomStop = (zoom.size() > 0) ? zoom.getFreq(zoom.size() - 1) : Long.MIN_VALUE;
+		int index = 0;
+
+		while (index < coarse.size() && coarse.getFreq(index) < zoomStart) {
+			copyPoint(coarse, index++, out);
+		}
+
+		for (int i = 0; i < zoom.size(); i++) {
+			copyPoint(zoom, i, out);
+		}
+
+		while (index < coarse.size()) {
+			if (coarse.getFreq(index) > zoomStop) {
+				copyPoint(coarse, index, out);
+			}
+			index++;
+		}
+	}
+
+	private static void copyPoint(SweepData from, int index, SweepData to) {
+		to.add(from.getFreq(index), from.getSWR(index), from.getFwd(index), from.getRev(index),
+				from.getRawSWR(index));
+	}
+}
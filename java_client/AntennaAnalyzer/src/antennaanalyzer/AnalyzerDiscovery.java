@@ -0,0 +1,398 @@
+/*
+ * AnalyzerDiscovery
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.fazecast.jSerialComm.SerialPort;
+
+/**
+ * Finds analyzers among serial ports
+ *
+ * All candidate ports are probed in parallel, each one by its own thread, so
+ * finding analyzers takes about one probe regardless of the number of ports.
+ * An analyzer is recognized by its "Version: " reply (see
+ * ArduinoAnalyzerCom.probe). Arduino resets itself when its port is opened
+ * (unless the port keeps DTR, see AnalyzerLink.keepAnalyzerRunning) and it
+ * does not answer while it starts. Therefore a port which does not answer
+ * the probe stays open and the probe waits for the end of the start (see
+ * ArduinoAnalyzerCom.waitForReady), at most BOOT_TIMEOUT_MS. The port is not
+ * probed again, another open would reset Arduino again.
+ *
+ * When it is started, the port list is polled off the caller's thread.
+ * Probing is optional because it opens foreign devices and sends them 'v';
+ * only ports which appeared since the last poll are probed, therefore other
+ * devices are not disturbed repeatedly.
+ *
+ * A port which is going to be connected is reserved (reservePort), it waits
+ * for a running probe of the port and no other probe opens it.
+ */
+public class AnalyzerDiscovery {
+
+	/* the probe threads mostly wait for the port */
+	private static final int MAX_PROBE_THREADS = 32;
+
+	/* Arduino starts in about 3 s after the reset by opening the port */
+	private static final int BOOT_TIMEOUT_MS = 5000;
+
+	/* an opened port which did not answer in time */
+	private static final String NO_ANSWER = "";
+
+	/* the port is reserved, it was not opened */
+	private static final String RESERVED = "reserved";
+
+	private final int baudRate;
+	private final int probeTimeout;
+	private final ExecutorService probeExecutor;
+	private ScheduledExecutorService pollExecutor = null;
+
+	/* state of polling, it is accessed only by the poll thread */
+	private final Set<String> knownPorts = new HashSet<String>();
+	private final Map<String, String> analyzers = new LinkedHashMap<String, String>();
+	private List<String> lastPorts = null;
+
+	/* a probe holds the lock of its port while the port is open */
+	private final ConcurrentMap<String, Lock> portLocks = new ConcurrentHashMap<String, Lock>();
+	private volatile String reservedPort = null;
+
+	/**
+	 * Prepares the discovery
+	 * 
+	 * @param in_baudRate
+	 *            initial baud rate of analyzers
+	 * @param in_probeTimeout
+	 *            max wait time for the version reply of a running analyzer
+	 *            in ms
+	 */
+	public AnalyzerDiscovery(int in_baudRate, int in_probeTimeout) {
+		baudRate = in_baudRate;
+		probeTimeout = in_probeTimeout;
+
+		/* more ports than threads wait in the queue */
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PROBE_THREADS, MAX_PROBE_THREADS, 10,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					private int counter = 0;
+
+					@Override
+					public synchronized Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "Discovery probe " + (++counter));
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+		probeExecutor = executor;
+	}
+
+	/**
+	 * @return names of all serial ports
+	 */
+	public static List<String> listPorts() {
+		SerialPort[] serialPorts = SerialPort.getCommPorts();
+		List<String> names = new ArrayList<String>(serialPorts.length);
+
+		for (SerialPort port : serialPorts) {
+			names.add(port.getSystemPortName());
+		}
+
+		return names;
+	}
+
+	/**
+	 * It reserves the port, e.g. before it is connected; it waits until a
+	 * running probe of the port closes it
+	 * 
+	 * @param port
+	 * @throws InterruptedException
+	 */
+	public void reservePort(String port) throws InterruptedException {
+		reservedPort = port;
+
+		/* probes which take the lock later see the reservation */
+		Lock lock = portLock(port);
+		lock.lockInterruptibly();
+		lock.unlock();
+	}
+
+	/**
+	 * It allows probing of the reserved port again
+	 */
+	public void releasePort() {
+		reservedPort = null;
+	}
+
+	private Lock portLock(String port) {
+		Lock lock = portLocks.get(port);
+
+		if (lock == null) {
+			Lock newLock = new ReentrantLock();
+			lock = portLocks.putIfAbsent(port, newLock);
+
+			if (lock == null) {
+				lock = newLock;
+			}
+		}
+		return lock;
+	}
+
+	/**
+	 * It probes ports in parallel and waits until all probes finish
+	 * 
+	 * @param ports
+	 * @return version lines of analyzers by port, in the order of ports
+	 * @throws InterruptedException
+	 */
+	public Map<String, String> probePorts(Collection<String> ports) throws InterruptedException {
+		Map<String, String> found = new LinkedHashMap<String, String>();
+
+		for (Map.Entry<String, String> entry : probeAll(ports).entrySet()) {
+			if (!entry.getValue().equals(NO_ANSWER) && !entry.getValue().equals(RESERVED)) {
+				found.put(entry.getKey(), entry.getValue());
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * It starts polling of the port list in a background thread
+	 * 
+	 * @param period
+	 *            poll period in ms
+	 * @param probing
+	 *            true - new ports are probed, false - only the port list is
+	 *            reported
+	 * @param listener
+	 *            it receives the first result and all changes
+	 */
+	public synchronized void start(int period, final boolean probing, final DiscoveryListener listener) {
+		if (pollExecutor != null) {
+			return;
+		}
+
+		pollExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Analyzer discovery");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		pollExecutor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					poll(listPorts(), probing, listener);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (RuntimeException e) {
+					/* an exception would stop next polls */
+					System.err.println("Analyzer discovery: " + e);
+				}
+			}
+		}, 0, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * It stops polling and running probes
+	 */
+	public synchronized void stop() {
+		if (pollExecutor != null) {
+			pollExecutor.shutdownNow();
+			pollExecutor = null;
+		}
+		probeExecutor.shutdownNow();
+	}
+
+	/**
+	 * It probes new ports and reports changes; it runs in the poll thread
+	 * 
+	 * @param ports
+	 *            current port list
+	 * @param probing
+	 * @param listener
+	 * @throws InterruptedException
+	 */
+	void poll(List<String> ports, boolean probing, DiscoveryListener listener) throws InterruptedException {
+		boolean changed = !ports.equals(lastPorts);
+
+		knownPorts.retainAll(ports);
+		changed |= analyzers.keySet().retainAll(ports);
+
+		Set<String> candidates = new HashSet<String>();
+
+		for (String port : ports) {
+			if (knownPorts.add(port)) {
+				candidates.add(port);
+			}
+		}
+
+		if (!probing) {
+			candidates.clear();
+		}
+
+		for (Map.Entry<String, String> entry : probeAll(candidates).entrySet()) {
+			String port = entry.getKey();
+
+			if (entry.getValue().equals(RESERVED)) {
+				/* it is probed when it is not connected anymore */
+				knownPorts.remove(port);
+			} else if (!entry.getValue().equals(NO_ANSWER)) {
+				changed |= !entry.getValue().equals(analyzers.put(port, entry.getValue()));
+			}
+		}
+
+		if (changed) {
+			lastPorts = ports;
+			listener.portsChanged(Collections.unmodifiableList(ports),
+					Collections.unmodifiableMap(new LinkedHashMap<String, String>(analyzers)));
+		}
+	}
+
+	/**
+	 * It probes ports in parallel
+	 * 
+	 * @param ports
+	 * @return version lines by port; NO_ANSWER for opened ports which did not
+	 *         answer, RESERVED for the reserved port; ports which could not
+	 *         be opened are left out
+	 * @throws InterruptedException
+	 */
+	private Map<String, String> probeAll(Collection<String> ports) throws InterruptedException {
+		Map<String, Future<String>> futures = new LinkedHashMap<String, Future<String>>();
+		Map<String, String> results = new LinkedHashMap<String, String>();
+
+		for (final String port : ports) {
+			futures.put(port, probeExecutor.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return probe(port);
+				}
+			}));
+		}
+
+		for (Map.Entry<String, Future<String>> entry : futures.entrySet()) {
+			String version = waitFor(entry.getValue());
+
+			if (version != null) {
+				results.put(entry.getKey(), version);
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * @return result of a probe, null if it failed
+	 * @throws InterruptedException
+	 */
+	private static String waitFor(Future<String> future) throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException | CancellationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * It waits until Arduino which was reset by opening the port starts and
+	 * asks it for the version
+	 * 
+	 * @param arduino
+	 *            opened port which did not answer the probe
+	 * @return version line or null if the port did not start as an analyzer
+	 * @throws InterruptedException
+	 */
+	private String probeAfterStart(ArduinoAnalyzerCom arduino) throws InterruptedException {
+		try {
+			arduino.waitForReady(BOOT_TIMEOUT_MS);
+			return arduino.getFirmwareVersion(probeTimeout);
+		} catch (IOException | ExecutionException | TimeoutException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * It probes one port; it runs in a probe thread
+	 * 
+	 * @param port
+	 * @return version line, NO_ANSWER, RESERVED or null if the port cannot be
+	 *         opened
+	 * @throws Exception
+	 */
+	private String probe(String port) throws Exception {
+		Lock lock = portLock(port);
+
+		lock.lockInterruptibly();
+		try {
+			if (port.equals(reservedPort)) {
+				return RESERVED;
+			}
+
+			ArduinoAnalyzerCom arduino = new ArduinoAnalyzerCom(baudRate, new MonitorLog(20));
+
+			if (!arduino.openPort(port)) {
+				return null;
+			}
+
+			try {
+				String version = arduino.probe(probeTimeout);
+
+				if (version == null) {
+					version = probeAfterStart(arduino);
+				}
+				return version != null ? version : NO_ANSWER;
+			} finally {
+				arduino.closePort();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * AnalyzerLink
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Byte stream between the client and an analyzer
+ *
+ * ArduinoAnalyzerCom talks to the analyzer only through this interface; it
+ * is implemented by a serial port (SerialAnalyzerLink) and by the simulated
+ * analyzer (VirtualAnalyzer).
+ *
+ * read() of the input stream has to return periodically (0 bytes) even if
+ * nothing was received, otherwise the reader cannot be stopped.
+ */
+public interface AnalyzerLink {
+
+	/**
+	 * @return name of the port
+	 */
+	String getName();
+
+	/**
+	 * @return true if the link was opened
+	 */
+	boolean open();
+
+	/**
+	 * @return true if the link was closed
+	 */
+	boolean close();
+
+	/**
+	 * It changes the baud rate of an open link
+	 * 
+	 * @param rate
+	 */
+	void setBaudRate(int rate);
+
+	/**
+	 * It keeps the analyzer running when the link is closed, so the next
+	 * open does not reset it; it can change system settings of the port
+	 * 
+	 * @throws IOException
+	 *             the link cannot do it
+	 */
+	void keepAnalyzerRunning() throws IOException;
+
+	InputStream getInputStream();
+
+	OutputStream getOutputStream();
+}
@@ -0,0 +1,214 @@
+/*
+ * AnalyzerMetrics
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Runtime metrics of one analyzer connection
+ *
+ * ArduinoAnalyzerCom records command round trips, sweep times, transfer
+ * rates and parse time of each point; SWRGraph records how long received
+ * points wait until they are shown in Event Dispatch Thread. Times are
+ * recorded in ns. The metrics can be watched by JMX (e.g. jconsole) under
+ * antennaanalyzer:type=AnalyzerMetrics,name=PORT.
+ */
+public class AnalyzerMetrics implements AnalyzerMetricsMXBean {
+
+	private static final String JMX_DOMAIN = "antennaanalyzer";
+
+	private final MetricHistogram commandRoundTrip = new MetricHistogram("Command round trip", "ns");
+	private final MetricHistogram sweepTime = new MetricHistogram("Sweep time", "ns");
+	private final MetricHistogram pointsPerSecond = new MetricHistogram("Points", "1/s");
+	private final MetricHistogram bytesReceivedPerSecond = new MetricHistogram("Received", "B/s");
+	private final MetricHistogram bytesSentPerSecond = new MetricHistogram("Sent", "B/s");
+	private final MetricHistogram parseTime = new MetricHistogram("Parse time per point", "ns");
+	private final MetricHistogram publishLag = new MetricHistogram("EDT publish lag", "ns");
+
+	private final MetricHistogram[] histograms = { commandRoundTrip, sweepTime, pointsPerSecond,
+			bytesReceivedPerSecond, bytesSentPerSecond, parseTime, publishLag };
+
+	private final AtomicLong bytesReceived = new AtomicLong();
+	private final AtomicLong bytesSent = new AtomicLong();
+
+	private ObjectName objectName = null;
+
+	/**
+	 * @return all histograms in the order of the stats panel
+	 */
+	public MetricHistogram[] getHistograms() {
+		return histograms.clone();
+	}
+
+	/**
+	 * @param nanos
+	 *            time from sending a command to its "#OK#"
+	 */
+	public void recordCommandRoundTrip(long nanos) {
+		commandRoundTrip.record(nanos);
+	}
+
+	/**
+	 * It records one finished sweep
+	 *
+	 * @param nanos
+	 *            sweep wall time including the setup commands
+	 * @param points
+	 *            received points
+	 * @param received
+	 *            bytes received during the sweep
+	 * @param sent
+	 *            bytes sent during the sweep
+	 */
+	public void recordSweep(long nanos, int points, long received, long sent) {
+		/* avoids division by zero, sweeps shorter than 1 us are not real */
+		long micros = Math.max(nanos / 1000, 1);
+
+		sweepTime.record(nanos);
+		pointsPerSecond.record(points * 1000000L / micros);
+		bytesReceivedPerSecond.record(received * 1000000L / micros);
+		bytesSentPerSecond.record(sent * 1000000L / micros);
+	}
+
+	/**
+	 * @param nanos
+	 *            time of parsing (or frame decoding) and calibration of one
+	 *            point
+	 */
+	public void recordParseTime(long nanos) {
+		parseTime.record(nanos);
+	}
+
+	/**
+	 * @param nanos
+	 *            time from adding of the first pending point to its
+	 *            publishing in Event Dispatch Thread
+	 */
+	public void recordPublishLag(long nanos) {
+		publishLag.record(nanos);
+	}
+
+	public void addBytesReceived(long count) {
+		bytesReceived.addAndGet(count);
+	}
+
+	public void addBytesSent(long count) {
+		bytesSent.addAndGet(count);
+	}
+
+	@Override
+	public long getBytesReceived() {
+		return bytesReceived.get();
+	}
+
+	@Override
+	public long getBytesSent() {
+		return bytesSent.get();
+	}
+
+	@Override
+	public MetricHistogram.Snapshot getCommandRoundTrip() {
+		return commandRoundTrip.getSnapshot();
+	}
+
+	@Override
+	public MetricHistogram.Snapshot getSweepTime() {
+		return sweepTime.getSnapshot();
+	}
+
+	@Override
+	public MetricHistogram.Snapshot getPointsPerSecond() {
+		return pointsPerSecond.getSnapshot();
+	}
+
+	@Override
+	public MetricHistogram.Snapshot getBytesReceivedPerSecond() {
+		return bytesReceivedPerSecond.getSnapshot();
+	}
+
+	@Override
+	public MetricHistogram.Snapshot getBytesSentPerSecond() {
+		return bytesSentPerSecond.getSnapshot();
+	}
+
+	@Override
+	public MetricHistogram.Snapshot getParseTime() {
+		return parseTime.getSnapshot();
+	}
+
+	@Override
+	public MetricHistogram.Snapshot getPublishLag() {
+		return publishLag.getSnapshot();
+	}
+
+	@Override
+	public void reset() {
+		for (MetricHistogram histogram : histograms) {
+			histogram.reset();
+		}
+		bytesReceived.set(0);
+		bytesSent.set(0);
+	}
+
+	/**
+	 * It registers the metrics in the platform MBean server
+	 *
+	 * @param name
+	 *            e.g. port name
+	 * @throws JMException
+	 *             metrics with the same name are already registered
+	 */
+	public synchronized void register(String name) throws JMException {
+		unregister();
+
+		ObjectName objName = new ObjectName(
+				JMX_DOMAIN + ":type=AnalyzerMetrics,name=" + ObjectName.quote(name));
+
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objName);
+		objectName = objName;
+	}
+
+	/**
+	 * It removes the metrics from the platform MBean server
+	 */
+	public synchronized void unregister() {
+		if (objectName == null) {
+			return;
+		}
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		try {
+			server.unregisterMBean(objectName);
+		} catch (JMException e) {
+			// it was already removed
+		}
+		objectName = null;
+	}
+}
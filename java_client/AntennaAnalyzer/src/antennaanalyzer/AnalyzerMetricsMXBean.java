@@ -0,0 +1,53 @@
+/*
+ * AnalyzerMetricsMXBean
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+/**
+ * JMX view of AnalyzerMetrics
+ *
+ * Times are in nanoseconds, rates are per second. Each histogram attribute
+ * contains count, mean, p50, p90, p99 and max.
+ */
+public interface AnalyzerMetricsMXBean {
+
+	MetricHistogram.Snapshot getCommandRoundTrip();
+
+	MetricHistogram.Snapshot getSweepTime();
+
+	MetricHistogram.Snapshot getPointsPerSecond();
+
+	MetricHistogram.Snapshot getBytesReceivedPerSecond();
+
+	MetricHistogram.Snapshot getBytesSentPerSecond();
+
+	MetricHistogram.Snapshot getParseTime();
+
+	MetricHistogram.Snapshot getPublishLag();
+
+	long getBytesReceived();
+
+	long getBytesSent();
+
+	void reset();
+}
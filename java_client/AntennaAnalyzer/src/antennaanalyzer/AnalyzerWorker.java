@@ -0,0 +1,104 @@
+/*
+ * AnalyzerWorker
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Worker thread which owns the analyzer connection
+ *
+ * All device work (connect, sweeps, disconnect) runs as tasks in one
+ * thread, therefore commands of two tasks never interleave on the port and
+ * a new task waits until the previous one returns the link to idle.
+ *
+ * stop() cancels the running and waiting tasks. The running task is
+ * interrupted; a sweep is aborted by ArduinoAnalyzerCom.performSweep, which
+ * discards the rest of the sweep and throws InterruptedException.
+ */
+public class AnalyzerWorker {
+
+	private final ExecutorService executor;
+
+	/* submitted tasks which are not done yet */
+	private final List<Future<?>> tasks = new ArrayList<Future<?>>();
+
+	/**
+	 * It starts the worker thread
+	 *
+	 * @param name
+	 *            thread name
+	 */
+	public AnalyzerWorker(final String name) {
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * It adds a task; tasks run in the order of submission
+	 *
+	 * @param task
+	 * @return future of the task
+	 */
+	public synchronized Future<?> submit(Runnable task) {
+		removeDoneTasks();
+
+		Future<?> future = executor.submit(task);
+		tasks.add(future);
+		return future;
+	}
+
+	/**
+	 * It cancels all tasks and interrupts the running one
+	 *
+	 * It does not wait, the running task finishes in the worker thread.
+	 */
+	public synchronized void stop() {
+		for (Future<?> future : tasks) {
+			future.cancel(true);
+		}
+		tasks.clear();
+	}
+
+	private void removeDoneTasks() {
+		Iterator<Future<?>> iterator = tasks.iterator();
+
+		while (iterator.hasNext()) {
+			if (iterator.next().isDone()) {
+				iterator.remove();
+			}
+		}
+	}
+}
@@ -0,0 +1,1291 @@
+
+/*
+ * AntennaAnalyzer
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.awt.event.ActionEvent;
+import javax.swing.event.*;
+import javax.swing.filechooser.FileFilter;
+import javax.swing.filechooser.FileNameExtensionFilter;
+
+import org.jfree.chart.ChartPanel;
+
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+
+import javax.swing.*;
+import java.awt.*;
+
+import java.util.*;
+
+import javax.management.JMException;
+
+public class AntennaAnalyzer extends JFrame {
+
+	private static final long serialVersionUID = 1L;
+
+	private JComboBox<String> portList;
+	private JComboBox<String> bandList;
+	private JComboBox<Integer> stepList;
+	private JComboBox<SweepProfile> profileList;
+
+	private JButton connectButton;
+	private JButton sweepButton;
+	private JButton saveChartCSVButton;
+	private JButton sweep2ndButton;
+	private JToggleButton liveSweepButton;
+	private JButton stopButton;
+	private JCheckBox zoomCheckBox;
+
+	/* dense steps around the resonance in zoom mode */
+	private static final int ZOOM_STEPS = 50;
+	private AdaptiveSweep adaptiveSweep = new AdaptiveSweep();
+
+	/* live sweep runs until the live button is released */
+	private volatile boolean liveSweepEnabled = false;
+
+	private JTextField start_freq;
+	private JTextField stop_freq;
+
+	private JSlider sliderSWR;
+
+	private SWRGraph swrGraph;
+
+	private JTextArea arduinoMonitor;
+
+	private MonitorLog arduinoLog;
+
+	private JCheckBox showPointsCheckBox;
+
+	private JCheckBox calibrationCheckBox;
+	private JCheckBox binaryCheckBox;
+
+	private InputFreqVerifier freqVerifier;
+
+	private ArduinoAnalyzerCom arduino;
+
+	/* connect, sweeps and disconnect run one by one in this thread */
+	private final AnalyzerWorker worker = new AnalyzerWorker("Analyzer worker");
+
+	/* all five sweep columns for each serie - kept for later analysis */
+	private Map<SWRGraph.SERIE_TYPE, SweepData> sweepResults = new EnumMap<SWRGraph.SERIE_TYPE, SweepData>(
+			SWRGraph.SERIE_TYPE.class);
+
+	/* retained sweeps which can be shown as overlays */
+	private SweepHistory history;
+	private DefaultListModel<Integer> historyModel;
+	private JList<Integer> historyList;
+	private JButton removeHistoryButton;
+
+	/* memory for retained sweeps, older sweeps are moved to disk */
+	private static final long HISTORY_MEMORY_MB = Long.getLong("antennaanalyzer.history.mb", 64);
+
+	/* -Dantennaanalyzer.keeprunning=true switches the analyzer port to -hupcl, see ArduinoAnalyzerCom */
+	private static final boolean KEEP_RUNNING = Boolean.getBoolean("antennaanalyzer.keeprunning");
+
+	/* the highest baud rate which is negotiated after connect; 57600 disables it */
+	private static final int MAX_BAUD_RATE = Integer.getInteger("antennaanalyzer.baudrate.max", 1000000);
+
+	/* new serial ports are probed for analyzers with -Dantennaanalyzer.discovery=true */
+	private static final boolean DISCOVERY_PROBING = Boolean.getBoolean("antennaanalyzer.discovery");
+	private static final int DISCOVERY_PROBE_MS = 500;
+	private static final int DISCOVERY_PERIOD_MS = 3000;
+
+	private AnalyzerDiscovery discovery;
+
+	/* version lines of found analyzers by port, it is used only in EDT */
+	private Map<String, String> foundAnalyzers = new HashMap<String, String>();
+
+	Map<String, FreqRange> bandPlan = new TreeMap<String, FreqRange>();
+
+	/**
+	 * Returns the lowest frequency for selected band
+	 * 
+	 * @return The lowest frequency
+	 */
+	private int getSelectLowFreq() {
+		return bandPlan.get(bandList.getSelectedItem()).getLowFreq();
+	}
+
+	/**
+	 * Returns the highest frequency for selected band
+	 * 
+	 * @return The highest frequency
+	 */
+	private int getSelectHighFreq() {
+		return bandPlan.get(bandList.getSelectedItem()).getHighFreq();
+	}
+
+	/**
+	 * Handles SWR Zoom slider change Event. Modifies the SWR range in Graph
+	 * 
+	 * @param e
+	 *            Change Event from Slider
+	 */
+	private void sliderSWR_change(ChangeEvent e) {
+		JSlider source = (JSlider) e.getSource();
+		if (!source.getValueIsAdjusting()) {
+			swrGraph.changeSWRRange(1, source.getValue());
+		}
+	}
+
+	/**
+	 * Handles Band list Event.
+	 * 
+	 * @param event
+	 */
+	private void bandListAction(ActionEvent event) {
+		String selectedband = (String) bandList.getSelectedItem();
+
+		if (selectedband.equals("custom")) {
+			start_freq.setEditable(true);
+			stop_freq.setEditable(true);
+		} else {
+			start_freq.setEditable(false);
+			stop_freq.setEditable(false);
+		}
+
+		swrGraph.changeFrequencyRange(getSelectLowFreq(), getSelectHighFreq());
+
+		start_freq.setText(String.valueOf(getSelectLowFreq()));
+		stop_freq.setText(String.valueOf(getSelectHighFreq()));
+
+		/* New measurement will be start - disable 2nd sweep and save button */
+		saveChartCSVButton.setEnabled(false);
+		sweep2ndButton.setEnabled(false);
+	}
+
+	/**
+	 * Handles Sweep Button Action
+	 * 
+	 * It is called from Event Dispatch Thread, the sweep runs in the worker
+	 * thread.
+	 * 
+	 * @param event
+	 */
+	private void sweepButtonAction(ActionEvent event) {
+		final SWRGraph.SERIE_TYPE curr_serie;
+		final long start;
+		final long stop;
+
+		try {
+			start = Integer.parseInt(start_freq.getText()) * 1000L;
+			stop = Integer.parseInt(stop_freq.getText()) * 1000L;
+		} catch (NumberFormatException e) {
+			showError("Sweep failed: " + e.getMessage(), "Connection Error");
+			return;
+		}
+
+		final int steps = (Integer) stepList.getSelectedItem();
+		final boolean zoom = zoomCheckBox.isSelected();
+
+		if (event.getSource().equals(sweep2ndButton)) {
+			curr_serie = SWRGraph.SERIE_TYPE.SECONDARY;
+		} else {
+			curr_serie = SWRGraph.SERIE_TYPE.PRIMARY;
+			swrGraph.cleanSWRData(SWRGraph.SERIE_TYPE.SECONDARY);
+		}
+
+		/* Disable GUI elements during sweeping */
+		sweepButton.setEnabled(false);
+		sweep2ndButton.setEnabled(false);
+		liveSweepButton.setEnabled(false);
+		saveChartCSVButton.setEnabled(false);
+		bandList.setEnabled(false);
+		start_freq.setEditable(false);
+		stop_freq.setEditable(false);
+
+		/* Clear graph for selected serie */
+		swrGraph.cleanSWRData(curr_serie);
+
+		submitDeviceTask(new Runnable() {
+			@Override
+			public void run() {
+				sweepTask(curr_serie, start, stop, steps, zoom);
+			}
+		});
+	}
+
+	/**
+	 * Sweep; it runs in the worker thread
+	 */
+	private void sweepTask(final SWRGraph.SERIE_TYPE curr_serie, long start, long stop, int steps, boolean zoom) {
+		try {
+			SweepData result = sweepResults.get(curr_serie);
+			SweepListener listener = new SweepListener() {
+				@Override
+				public void sweepPoint(SweepData data, int index) {
+					swrGraph.addSWRData(curr_serie, data.getFreq(index) / 1000.0f, data.getSWR(index));
+				}
+			};
+
+			if (zoom) {
+				adaptiveSweep.performSweep(arduino, start, stop, steps, ZOOM_STEPS, 5000, result, listener);
+
+				/* merged trace replaces coarse and zoom points in frequency order */
+				swrGraph.cleanSWRData(curr_serie);
+				for (int index = 0; index < result.size(); index++) {
+					listener.sweepPoint(result, index);
+				}
+			} else {
+				arduino.performSweep(start, stop, steps, 5000, result, listener);
+			}
+			retainSweep(curr_serie, start, stop);
+		} catch (InterruptedException e) {
+			arduinoLog.add("Sweep stopped");
+		} catch (Exception e) {
+			System.out.println(e);
+			showError("Sweep failed: " + e.getMessage(), "Connection Error");
+		}
+
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				/* Enable GUI elements after sweeping */
+				sweep2ndButton.setEnabled(true);
+				sweepButton.setEnabled(true);
+				liveSweepButton.setEnabled(true);
+				saveChartCSVButton.setEnabled(true);
+				bandList.setEnabled(true);
+
+				if ((String) bandList.getSelectedItem() == "custom") {
+					start_freq.setEditable(true);
+					stop_freq.setEditable(true);
+				}
+
+				swrGraph.showMinimum(SWRGraph.SERIE_TYPE.PRIMARY);
+			}
+		});
+	}
+
+	/**
+	 * Handles Live Button Action; it is called from Event Dispatch Thread
+	 */
+	private void liveButtonAction() {
+		if (!liveSweepButton.isSelected()) {
+			/* the loop finishes the current sweep and enables the button */
+			liveSweepEnabled = false;
+			liveSweepButton.setEnabled(false);
+			return;
+		}
+
+		liveSweepEnabled = true;
+
+		/* Disable GUI elements during sweeping */
+		connectButton.setEnabled(false);
+		sweepButton.setEnabled(false);
+		sweep2ndButton.setEnabled(false);
+		saveChartCSVButton.setEnabled(false);
+
+		swrGraph.cleanSWRData(SWRGraph.SERIE_TYPE.SECONDARY);
+
+		submitDeviceTask(new Runnable() {
+			@Override
+			public void run() {
+				liveSweepTask();
+			}
+		});
+	}
+
+	/**
+	 * Live Sweep loop; it runs in the worker thread
+	 * 
+	 * It repeats sweeps of the primary serie until the Live button is
+	 * released. Each new point replaces the point of previous sweep, therefore
+	 * the graph is never cleaned while the range does not change. The range
+	 * can be changed during the live sweep; the setup commands are sent only
+	 * when it changes.
+	 */
+	private void liveSweepTask() {
+		final SWRGraph.SERIE_TYPE curr_serie = SWRGraph.SERIE_TYPE.PRIMARY;
+		long last_start = -1;
+		long last_stop = -1;
+		int last_steps = -1;
+
+		try {
+			while (liveSweepEnabled) {
+				long[] range = readSweepRange();
+				long start = range[0];
+				long stop = range[1];
+				int steps = (int) range[2];
+
+				/* points of old range must not stay in graph */
+				if (start != last_start || stop != last_stop || steps != last_steps) {
+					swrGraph.cleanSWRData(curr_serie);
+					last_start = start;
+					last_stop = stop;
+					last_steps = steps;
+				}
+
+				swrGraph.startSweep(curr_serie);
+
+				arduino.performSweep(start, stop, steps, 5000, sweepResults.get(curr_serie), new SweepListener() {
+					@Override
+					public void sweepPoint(SweepData data, int index) {
+						swrGraph.addSWRData(curr_serie, data.getFreq(index) / 1000.0f, data.getSWR(index));
+					}
+				});
+
+				swrGraph.showMinimum(curr_serie);
+			}
+		} catch (InterruptedException e) {
+			arduinoLog.add("Live sweep stopped");
+		} catch (Exception e) {
+			System.out.println(e);
+			showError("Live Sweep failed: " + e.getMessage(), "Connection Error");
+		}
+
+		liveSweepEnabled = false;
+
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				/* Enable GUI elements after sweeping */
+				liveSweepButton.setSelected(false);
+				liveSweepButton.setEnabled(true);
+				connectButton.setEnabled(true);
+				sweepButton.setEnabled(true);
+				sweep2ndButton.setEnabled(true);
+				saveChartCSVButton.setEnabled(true);
+			}
+		});
+	}
+
+	/**
+	 * It reads the sweep range from Event Dispatch Thread
+	 * 
+	 * @return start and stop in Hz, steps
+	 * @throws InterruptedException
+	 * @throws NumberFormatException
+	 *             the range is not a number
+	 */
+	private long[] readSweepRange() throws InterruptedException {
+		final long[] range = new long[3];
+
+		try {
+			SwingUtilities.invokeAndWait(new Runnable() {
+				@Override
+				public void run() {
+					range[0] = Integer.parseInt(start_freq.getText()) * 1000L;
+					range[1] = Integer.parseInt(stop_freq.getText()) * 1000L;
+					range[2] = (Integer) stepList.getSelectedItem();
+				}
+			});
+		} catch (InvocationTargetException e) {
+			throw (RuntimeException) e.getCause();
+		}
+		return range;
+	}
+
+	/**
+	 * It runs a task in the worker thread; Stop button is enabled while the
+	 * task runs
+	 * 
+	 * @param task
+	 */
+	private void submitDeviceTask(final Runnable task) {
+		worker.submit(new Runnable() {
+			@Override
+			public void run() {
+				setStopEnabled(true);
+				try {
+					task.run();
+				} finally {
+					setStopEnabled(false);
+				}
+			}
+		});
+	}
+
+	private void setStopEnabled(final boolean enabled) {
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				stopButton.setEnabled(enabled);
+			}
+		});
+	}
+
+	/**
+	 * It shows an error dialog; it can be called from any thread
+	 * 
+	 * @param message
+	 * @param title
+	 */
+	private void showError(final String message, final String title) {
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				JOptionPane.showMessageDialog(null, message, title, JOptionPane.ERROR_MESSAGE);
+			}
+		});
+	}
+
+	/**
+	 * Handles Connect Button Action
+	 * 
+	 * It is called from Event Dispatch Thread, the port is opened and closed
+	 * in the worker thread.
+	 * 
+	 * @param e
+	 */
+	private void connectButtonAction(ActionEvent e) {
+
+		if (connectButton.getText().equals("Connect")) {
+
+			if (portList.getSelectedItem() == null) {
+				JOptionPane.showMessageDialog(null, "No Port Selected", "Connection Error", JOptionPane.ERROR_MESSAGE);
+				return;
+			}
+
+			final String port = portList.getSelectedItem().toString();
+
+			/* they are enabled again when the connect fails */
+			portList.setEnabled(false);
+			connectButton.setEnabled(false);
+
+			submitDeviceTask(new Runnable() {
+				@Override
+				public void run() {
+					connectTask(port);
+				}
+			});
+		} else {
+			// disconnect; the running sweep is stopped and its buttons are disabled after it
+			connectButton.setEnabled(false);
+			liveSweepEnabled = false;
+			worker.stop();
+
+			worker.submit(new Runnable() {
+				@Override
+				public void run() {
+					arduino.closePort();
+					discovery.releasePort();
+
+					SwingUtilities.invokeLater(new Runnable() {
+						@Override
+						public void run() {
+							connectButton.setText("Connect");
+							connectButton.setBackground(Color.RED);
+							connectButton.setEnabled(true);
+
+							sweepButton.setEnabled(false);
+							sweep2ndButton.setEnabled(false);
+							liveSweepButton.setEnabled(false);
+							saveChartCSVButton.setEnabled(false);
+							portList.setEnabled(true);
+						}
+					});
+				}
+			});
+		}
+	}
+
+	/**
+	 * It connects the analyzer; it runs in the worker thread
+	 * 
+	 * @param port
+	 */
+	private void connectTask(String port) {
+		try {
+			/* discovery must not open the connected port, a running probe is finished */
+			discovery.reservePort(port);
+
+			// attempt to connect to the serial port
+			if (!arduino.openPort(port)) {
+				connectFailed("Cannot Open Port");
+				return;
+			}
+
+			try {
+				arduino.waitForReady(5000);
+				arduino.negotiateBaudRate(MAX_BAUD_RATE);
+			} catch (Exception et) {
+				arduino.closePort();
+				throw et;
+			}
+		} catch (InterruptedException et) {
+			arduinoLog.add("Connect stopped");
+			connectFailed(null);
+			return;
+		} catch (Exception et) {
+			connectFailed("Analyzer does not respond: " + et.getMessage());
+			return;
+		}
+
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				connectButton.setBackground(Color.GREEN);
+				connectButton.setText("Disconnect");
+				connectButton.setEnabled(true);
+				sweepButton.setEnabled(true);
+				sweep2ndButton.setEnabled(false);
+				liveSweepButton.setEnabled(true);
+				swrGraph.cleanSWRData(SWRGraph.SERIE_TYPE.PRIMARY);
+				swrGraph.cleanSWRData(SWRGraph.SERIE_TYPE.SECONDARY);
+			}
+		});
+	}
+
+	/**
+	 * It returns the GUI to disconnected state; it runs in the worker thread
+	 * 
+	 * @param message
+	 *            error message or null
+	 */
+	private void connectFailed(final String message) {
+		discovery.releasePort();
+
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				portList.setEnabled(true);
+				connectButton.setEnabled(true);
+
+				if (message != null) {
+					JOptionPane.showMessageDialog(null, message, "Connection Error", JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		});
+	}
+
+	/**
+	 * It starts background discovery of serial ports
+	 * 
+	 * The port list is filled by the first result and updated when a port
+	 * appears or disappears. With probing, the first found analyzer is
+	 * selected unless an analyzer is selected already.
+	 */
+	private void startDiscovery() {
+		discovery = new AnalyzerDiscovery(57600, DISCOVERY_PROBE_MS);
+		discovery.start(DISCOVERY_PERIOD_MS, DISCOVERY_PROBING, new DiscoveryListener() {
+			@Override
+			public void portsChanged(final java.util.List<String> ports, final Map<String, String> analyzers) {
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						updatePortList(ports, analyzers);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * It updates the port combo by discovery results
+	 * 
+	 * It is called from Event Dispatch Thread
+	 * 
+	 * @param ports
+	 *            all serial ports
+	 * @param analyzers
+	 *            version lines by port
+	 */
+	private void updatePortList(java.util.List<String> ports, Map<String, String> analyzers) {
+		Object selected = portList.getSelectedItem();
+
+		for (int i = portList.getItemCount() - 1; i >= 0; i--) {
+			String item = portList.getItemAt(i);
+
+			/* the connected port stays in the list until it is disconnected */
+			if (!ports.contains(item) && !item.startsWith(VirtualAnalyzer.PORT_PREFIX)
+					&& !(item.equals(selected) && !portList.isEnabled())) {
+				portList.removeItemAt(i);
+			}
+		}
+
+		for (int i = 0; i < ports.size(); i++) {
+			if (((DefaultComboBoxModel<String>) portList.getModel()).getIndexOf(ports.get(i)) < 0) {
+				portList.insertItemAt(ports.get(i), Math.min(i, portList.getItemCount()));
+			}
+		}
+
+		for (Map.Entry<String, String> entry : analyzers.entrySet()) {
+			if (!entry.getValue().equals(foundAnalyzers.get(entry.getKey()))) {
+				arduinoLog.add("Analyzer found: " + entry.getKey() + ", " + entry.getValue());
+			}
+		}
+		foundAnalyzers = analyzers;
+
+		if (portList.getSelectedItem() == null && portList.getItemCount() > 0) {
+			portList.setSelectedIndex(0);
+		}
+
+		if (portList.isEnabled() && !analyzers.isEmpty() && !analyzers.containsKey(portList.getSelectedItem())) {
+			portList.setSelectedItem(analyzers.keySet().iterator().next());
+		}
+
+		portList.repaint();
+	}
+
+	/**
+	 * Handles frequency input Text Input
+	 * 
+	 * @param e
+	 */
+	private void freqInputAction(ActionEvent e) {
+		JTextField curr_field = (JTextField) e.getSource();
+
+		if (freqVerifier.verify(curr_field)) {
+
+			int low = Integer.parseInt(start_freq.getText());
+			int high = Integer.parseInt(stop_freq.getText());
+
+			if (low < high) {
+				swrGraph.changeFrequencyRange(low, high);
+
+			} else {
+				JOptionPane.showMessageDialog(null, "Invalid Frequency Range", "Invalid input",
+						JOptionPane.ERROR_MESSAGE);
+				curr_field.selectAll();
+			}
+			sweep2ndButton.setEnabled(false);
+			saveChartCSVButton.setEnabled(false);
+		}
+	}
+
+	/**
+	 * It keeps the finished sweep in history
+	 * 
+	 * It can be called from any thread
+	 * 
+	 * @param serie
+	 * @param start
+	 *            in Hz
+	 * @param stop
+	 *            in Hz
+	 */
+	private void retainSweep(SWRGraph.SERIE_TYPE serie, long start, long stop) {
+		String label = String.format("%tT %d-%d kHz%s", new Date(), start / 1000, stop / 1000,
+				(serie == SWRGraph.SERIE_TYPE.SECONDARY) ? " 2nd" : "");
+
+		try {
+			final int id = history.add(label, sweepResults.get(serie));
+
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					historyModel.addElement(id);
+				}
+			});
+		} catch (IOException e) {
+			arduinoLog.add("Cannot keep the sweep in history: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * It shows selected history sweeps as overlays and hides the others
+	 */
+	private void historySelectionChanged() {
+		java.util.List<Integer> selected = historyList.getSelectedValuesList();
+		int refused = 0;
+
+		for (Integer id : swrGraph.getOverlayIds()) {
+			if (!selected.contains(id)) {
+				swrGraph.hideOverlay(id);
+				history.hideOverlay(id);
+			}
+		}
+
+		java.util.List<Integer> shown = swrGraph.getOverlayIds();
+
+		for (Integer id : selected) {
+			if (shown.contains(id)) {
+				continue;
+			}
+
+			try {
+				/* the chart copy is counted in the history memory budget */
+				if (!history.showOverlay(id)) {
+					refused++;
+					continue;
+				}
+
+				/* spilled sweep is loaded from disk */
+				swrGraph.showOverlay(id, history.getLabel(id), history.get(id));
+			} catch (IOException e) {
+				history.hideOverlay(id);
+				JOptionPane.showMessageDialog(null, "Cannot load the sweep: " + e.getMessage(), "History",
+						JOptionPane.ERROR_MESSAGE);
+			}
+		}
+
+		if (refused > 0) {
+			JOptionPane.showMessageDialog(null,
+					refused + " sweeps are not shown, overlays would exceed the history memory ("
+							+ HISTORY_MEMORY_MB + " MB)",
+					"History", JOptionPane.ERROR_MESSAGE);
+		}
+
+		removeHistoryButton.setEnabled(!selected.isEmpty());
+	}
+
+	/**
+	 * It removes selected sweeps from history
+	 */
+	private void removeHistoryAction() {
+		for (Integer id : historyList.getSelectedValuesList()) {
+			/* it hides the overlay in history as well */
+			swrGraph.hideOverlay(id);
+			history.remove(id);
+			historyModel.removeElement(id);
+		}
+	}
+
+	/**
+	 * It saves the sweeps to CSV file (all series with detector values) or to
+	 * Touchstone S1P file (primary serie)
+	 * 
+	 * @param event
+	 */
+	private void saveGraphCSV(ActionEvent event) {
+		JFileChooser fileChooser = new JFileChooser();
+		fileChooser.setDialogTitle("Save Graph as CSV");
+		FileFilter csvFilter = new FileNameExtensionFilter("CSV file", "csv");
+		FileFilter s1pFilter = new FileNameExtensionFilter("Touchstone file", "s1p");
+		fileChooser.addChoosableFileFilter(csvFilter);
+		fileChooser.addChoosableFileFilter(s1pFilter);
+		fileChooser.setFileFilter(csvFilter);
+
+		int userSelection = fileChooser.showSaveDialog(this);
+
+		if (userSelection == JFileChooser.APPROVE_OPTION) {
+			String filename = fileChooser.getSelectedFile().getAbsolutePath();
+			String file = fileChooser.getSelectedFile().getName();
+			boolean touchstone = file.toLowerCase().endsWith(".s1p");
+
+			if (file.indexOf(".") == -1) {
+				touchstone = (fileChooser.getFileFilter() == s1pFilter);
+				filename = filename + (touchstone ? ".s1p" : ".csv");
+			}
+
+			try {
+				SweepExporter exporter = new SweepExporter();
+
+				if (touchstone) {
+					exporter.writeTouchstone(filename, sweepResults.get(SWRGraph.SERIE_TYPE.PRIMARY));
+				} else {
+					Map<String, SweepData> series = new LinkedHashMap<String, SweepData>();
+
+					for (SWRGraph.SERIE_TYPE type : SWRGraph.SERIE_TYPE.values()) {
+						if (sweepResults.get(type).size() > 0) {
+							series.put(type.name(), sweepResults.get(type));
+						}
+					}
+					exporter.writeCSV(filename, series);
+				}
+			} catch (IOException e) {
+				JOptionPane.showMessageDialog(null, "Cannot save the file", "Save As", JOptionPane.ERROR_MESSAGE);
+			}
+		}
+
+	}
+
+	/**
+	 * Creates TOP Panel
+	 * 
+	 * @return created panel
+	 */
+	private JPanel createNorthPanel() {
+		JPanel localPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+
+		/*
+		 * COM port Combo Box
+		 */
+		/* it is filled by the discovery (see startDiscovery) */
+		portList = new JComboBox<String>();
+
+		/* found analyzers are shown with their version */
+		portList.setRenderer(new DefaultListCellRenderer() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+					boolean isSelected, boolean cellHasFocus) {
+				String version = foundAnalyzers.get(value);
+
+				if (version != null) {
+					value = value + " - " + version;
+				}
+				return super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+			}
+		});
+
+		/* simulated analyzer for testing, e.g. -Dantennaanalyzer.virtual=virtual:latency=200000 */
+		String virtualPort = System.getProperty("antennaanalyzer.virtual");
+
+		if (virtualPort != null) {
+			portList.addItem(virtualPort.isEmpty() ? VirtualAnalyzer.PORT_PREFIX : virtualPort);
+		}
+
+		/*
+		 * COM Port Connect BUTTON
+		 */
+		connectButton = new JButton("Connect");
+		connectButton.setBackground(Color.RED);
+		// configure the connect button and use another thread to listen for data
+		connectButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent arg) {
+				connectButtonAction(arg);
+			}
+		});
+
+		/*
+		 * Band List Combo
+		 */
+		bandList = new JComboBox<String>();
+
+		for (Map.Entry<String, FreqRange> entry : bandPlan.entrySet()) {
+			bandList.addItem(entry.getKey());
+		}
+
+		bandList.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				bandListAction(event);
+			}
+		});
+
+		/*
+		 * Frequency range
+		 */
+		start_freq = new JTextField(5);
+		start_freq.setText(String.valueOf(getSelectLowFreq()));
+		start_freq.setEditable(false);
+		start_freq.setInputVerifier(freqVerifier);
+		start_freq.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				freqInputAction(event);
+			}
+		});
+
+		stop_freq = new JTextField(5);
+		stop_freq.setText(String.valueOf(getSelectHighFreq()));
+		stop_freq.setEditable(false);
+		stop_freq.setInputVerifier(freqVerifier);
+		stop_freq.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				freqInputAction(event);
+			}
+		});
+
+		/*
+		 * Step Number Combo
+		 */
+		stepList = new JComboBox<Integer>();
+		stepList.addItem(10);
+		stepList.addItem(20);
+		stepList.addItem(50);
+		stepList.addItem(100);
+		stepList.addItem(200);
+		stepList.addItem(500);
+		stepList.setSelectedIndex(3);
+
+		/*
+		 * Sweep profile Combo Box
+		 */
+		profileList = new JComboBox<SweepProfile>(SweepProfile.values());
+		profileList.setSelectedItem(SweepProfile.NORMAL);
+		profileList.setToolTipText("DDS settle time and analog samples per point (firmware 3.3lf and newer)");
+		profileList.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				arduino.setSweepProfile((SweepProfile) profileList.getSelectedItem());
+			}
+		});
+
+		/*
+		 * Zoom to resonance Check Box
+		 */
+		zoomCheckBox = new JCheckBox("Zoom");
+		zoomCheckBox.setToolTipText("Sweep again " + ZOOM_STEPS + " steps around SWR minimum");
+
+		/*
+		 * Sweep Button
+		 */
+		sweepButton = new JButton("Sweep");
+		sweepButton.setEnabled(false);
+		sweepButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent arg) {
+				sweepButtonAction(arg);
+			}
+		});
+
+		/*
+		 * Live Sweep Button
+		 */
+		liveSweepButton = new JToggleButton("Live");
+		liveSweepButton.setEnabled(false);
+		liveSweepButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent arg) {
+				liveButtonAction();
+			}
+		});
+
+		/*
+		 * Stop Button - aborts the running sweep
+		 */
+		stopButton = new JButton("Stop");
+		stopButton.setEnabled(false);
+		stopButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent arg) {
+				liveSweepEnabled = false;
+				worker.stop();
+			}
+		});
+
+		/*
+		 * Save CSV Button
+		 */
+		saveChartCSVButton = new JButton("Save as CSV");
+		saveChartCSVButton.setEnabled(false);
+		saveChartCSVButton.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				saveGraphCSV(event);
+
+			}
+		});
+
+		/*
+		 * The second Sweep Graph Button
+		 */
+		sweep2ndButton = new JButton("Sweep 2nd");
+		sweep2ndButton.setEnabled(false);
+		sweep2ndButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent arg) {
+				sweepButtonAction(arg);
+			}
+		});
+
+		/*
+		 * Prepare Panel
+		 */
+		localPanel.add(new JLabel("COM Port:"));
+		localPanel.add(portList);
+		localPanel.add(connectButton);
+		localPanel.add(Box.createRigidArea(new Dimension(30, 0)));
+		localPanel.add(new JLabel("Band: "));
+		localPanel.add(bandList);
+		localPanel.add(Box.createRigidArea(new Dimension(5, 0)));
+		localPanel.add(new JLabel("Start: "));
+		localPanel.add(start_freq);
+		localPanel.add(new JLabel("  End: "));
+		localPanel.add(stop_freq);
+		localPanel.add(new JLabel("kHz"));
+		localPanel.add(Box.createRigidArea(new Dimension(5, 0)));
+		localPanel.add(new JLabel("#Steps: "));
+		localPanel.add(stepList);
+		localPanel.add(profileList);
+		localPanel.add(zoomCheckBox);
+		localPanel.add(Box.createRigidArea(new Dimension(30, 0)));
+		localPanel.add(sweepButton);
+		localPanel.add(liveSweepButton);
+		localPanel.add(stopButton);
+		localPanel.add(saveChartCSVButton);
+		localPanel.add(Box.createRigidArea(new Dimension(30, 0)));
+		localPanel.add(sweep2ndButton);
+
+		return localPanel;
+	}
+
+	/**
+	 * Creates Central Panel layout
+	 * 
+	 * @return created panel
+	 */
+	private JPanel createCenterPanel() {
+		JPanel localPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+		ChartPanel chartPanel;
+
+		/*
+		 * SWR Zoom Slider
+		 */
+		sliderSWR = new JSlider(JSlider.VERTICAL, 2, 10, 2);
+		sliderSWR.setMajorTickSpacing(8);
+		sliderSWR.setMinorTickSpacing(1);
+		sliderSWR.setPaintLabels(true);
+		sliderSWR.setPaintTicks(true);
+		sliderSWR.setPreferredSize(new Dimension(50, 700));
+		sliderSWR.setLabelTable(sliderSWR.createStandardLabels(1));
+
+		sliderSWR.addChangeListener(new ChangeListener() {
+			public void stateChanged(ChangeEvent e) {
+				sliderSWR_change(e);
+			}
+		});
+		/*
+		 * SWR Graph
+		 */
+		swrGraph = new SWRGraph(getSelectLowFreq(), getSelectHighFreq(), 1, 2);
+		chartPanel = swrGraph.getChartPanel();
+		chartPanel.setPreferredSize(new Dimension(1200, 800));
+
+		/*
+		 * Prepare Panel
+		 */
+		localPanel.add(sliderSWR);
+		localPanel.add(chartPanel);
+
+		return localPanel;
+	}
+
+	/**
+	 * It loads SWR calibration table or switches back to Arduino SWR
+	 */
+	private void calibrationAction() {
+		if (!calibrationCheckBox.isSelected()) {
+			arduino.setCalibration(null);
+			calibrationCheckBox.setToolTipText(null);
+			return;
+		}
+
+		JFileChooser fileChooser = new JFileChooser();
+		fileChooser.setDialogTitle("Load calibration table");
+
+		if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+			calibrationCheckBox.setSelected(false);
+			return;
+		}
+
+		String filename = fileChooser.getSelectedFile().getAbsolutePath();
+
+		try {
+			arduino.setCalibration(CalibrationTable.load(filename));
+			calibrationCheckBox.setToolTipText(filename);
+		} catch (IOException e) {
+			calibrationCheckBox.setSelected(false);
+			JOptionPane.showMessageDialog(null, "Cannot load the calibration: " + e.getMessage(), "Calibration",
+					JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+	/**
+	 * It creates the East Panel (sweep history)
+	 * 
+	 * @return created Panel
+	 */
+	private JPanel createEastPanel() {
+		JPanel localPanel = new JPanel(new BorderLayout());
+
+		historyModel = new DefaultListModel<Integer>();
+		historyList = new JList<Integer>(historyModel);
+		historyList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+		historyList.setCellRenderer(new DefaultListCellRenderer() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+					boolean isSelected, boolean cellHasFocus) {
+				String label = history.getLabel((Integer) value);
+				return super.getListCellRendererComponent(list, label, index, isSelected, cellHasFocus);
+			}
+		});
+		historyList.addListSelectionListener(new ListSelectionListener() {
+			@Override
+			public void valueChanged(ListSelectionEvent event) {
+				if (!event.getValueIsAdjusting()) {
+					historySelectionChanged();
+				}
+			}
+		});
+
+		JScrollPane scrollingArea = new JScrollPane(historyList);
+		scrollingArea.setPreferredSize(new Dimension(220, 700));
+
+		/*
+		 * Remove from history BUTTON
+		 */
+		removeHistoryButton = new JButton("Remove");
+		removeHistoryButton.setEnabled(false);
+		removeHistoryButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				removeHistoryAction();
+			}
+		});
+
+		localPanel.add(new JLabel("History (select to overlay)"), BorderLayout.NORTH);
+		localPanel.add(scrollingArea, BorderLayout.CENTER);
+		localPanel.add(removeHistoryButton, BorderLayout.SOUTH);
+		return localPanel;
+	}
+
+	/**
+	 * It creates the South Panel (Arduino Monitor)
+	 * 
+	 * @return created Panel
+	 */
+	private JPanel createSouthPanel() {
+		JPanel localPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+
+		arduinoMonitor = new JTextArea();
+		arduinoMonitor.setEditable(false);
+		new MonitorLogView(arduinoLog, arduinoMonitor);
+
+		JScrollPane scrollingArea = new JScrollPane(arduinoMonitor);
+		scrollingArea.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
+
+		/*
+		 * Runtime metrics of the connection (also available by JMX)
+		 */
+		JTable metricsTable = new JTable(new MetricsView(arduino.getMetrics()));
+		metricsTable.getColumnModel().getColumn(0).setPreferredWidth(200);
+
+		JButton resetMetricsButton = new JButton("Reset");
+		resetMetricsButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				arduino.getMetrics().reset();
+			}
+		});
+
+		JPanel metricsPanel = new JPanel(new BorderLayout());
+		metricsPanel.add(new JScrollPane(metricsTable), BorderLayout.CENTER);
+		metricsPanel.add(resetMetricsButton, BorderLayout.EAST);
+
+		JTabbedPane southTabs = new JTabbedPane();
+		southTabs.addTab("Monitor", scrollingArea);
+		southTabs.addTab("Stats", metricsPanel);
+		southTabs.setPreferredSize(new Dimension(1100, 160));
+
+		/*
+		 * Sweep points in Monitor
+		 */
+		showPointsCheckBox = new JCheckBox("Show sweep points", arduinoLog.isSweepPointsEnabled());
+		showPointsCheckBox.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				arduinoLog.setSweepPointsEnabled(showPointsCheckBox.isSelected());
+			}
+		});
+
+		/*
+		 * SWR calibration computed in Java
+		 */
+		calibrationCheckBox = new JCheckBox("Calibrated SWR");
+		calibrationCheckBox.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				calibrationAction();
+			}
+		});
+
+		/*
+		 * Binary sweep frames
+		 */
+		binaryCheckBox = new JCheckBox("Binary sweep");
+		binaryCheckBox.setToolTipText("Sweep points as binary frames with CRC (firmware 3.2lf and newer)");
+		binaryCheckBox.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				arduino.setBinaryProtocol(binaryCheckBox.isSelected());
+			}
+		});
+
+		localPanel.add(southTabs);
+		localPanel.add(showPointsCheckBox);
+		localPanel.add(calibrationCheckBox);
+		localPanel.add(binaryCheckBox);
+		return localPanel;
+
+	}
+
+	/**
+	 * Constructor for Antenna Analyzer
+	 * 
+	 * @param title
+	 *            Window Title
+	 */
+	public AntennaAnalyzer(String title) {
+		super(title);
+		setSize(1520, 1024);
+		setLayout(new BorderLayout());
+		setVisible(true);
+
+		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+
+		bandPlan.put("160m", new FreqRange("160m", 1800, 2000));
+		bandPlan.put("80m", new FreqRange("80m", 3500, 3800));
+		bandPlan.put("40m", new FreqRange("40m", 7000, 7200));
+		bandPlan.put("20m", new FreqRange("20m", 14000, 14350));
+		bandPlan.put("10m", new FreqRange("10m", 28000, 29700));
+		bandPlan.put("18m", new FreqRange("18m", 18068, 18168));
+		bandPlan.put("custom", new FreqRange("custom", 1000, 30000));
+
+		freqVerifier = new InputFreqVerifier();
+
+		arduinoLog = new MonitorLog(1000);
+
+		arduino = new ArduinoAnalyzerCom(57600, arduinoLog);
+		arduino.setKeepRunning(KEEP_RUNNING);
+
+		try {
+			arduino.getMetrics().register("gui");
+		} catch (JMException e) {
+			System.out.println(e);
+		}
+
+		for (SWRGraph.SERIE_TYPE type : SWRGraph.SERIE_TYPE.values()) {
+			sweepResults.put(type, new SweepData());
+		}
+
+		history = new SweepHistory(HISTORY_MEMORY_MB * 1024 * 1024);
+
+		add(createNorthPanel(), BorderLayout.NORTH);
+		add(createCenterPanel(), BorderLayout.CENTER);
+		add(createEastPanel(), BorderLayout.EAST);
+		add(createSouthPanel(), BorderLayout.SOUTH);
+
+		swrGraph.setMetrics(arduino.getMetrics());
+
+		startDiscovery();
+	}
+
+	/**
+	 * Main Loop
+	 * 
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+				new AntennaAnalyzer("Antenna Analyzer");
+			}
+		});
+
+	}
+}
\ No newline at end of file
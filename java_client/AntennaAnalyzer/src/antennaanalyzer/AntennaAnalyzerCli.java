@@ -0,0 +1,404 @@
+/*
+ * AntennaAnalyzerCli
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command line Antenna Analyzer client
+ *
+ * It runs sweeps without GUI and writes the results to stdout or to CSV
+ * files. It does not load any Swing or JFreeChart class, therefore it can run
+ * on machines without display. Several analyzers can be swept in parallel,
+ * their ports are separated by comma. Port "virtual" (see VirtualAnalyzer)
+ * is the simulated analyzer. Port "auto" sweeps all analyzers found by
+ * AnalyzerDiscovery.
+ *
+ * Usage:
+ *
+ * AntennaAnalyzerCli -p PORT[,PORT...] -a START_HZ -b STOP_HZ [-n STEPS] [-r
+ * REPEAT] [-z ZOOM_STEPS] [-c CALIBRATION] [-o FILE_PREFIX] [-f csv|s1p] [-A
+ * ARCHIVE] [-P text|bin] [-S fast|normal|precision] [-B MAX_BAUD] [-K on|off]
+ *
+ * Without -o, all sweeps are written to stdout as
+ * "Port,Sweep,Frequence_HZ,SWR,FWD,REV,RAW_SWR". With -o, each sweep is
+ * written to FILE_PREFIX_N.csv (FILE_PREFIX_PORT_N.csv for more analyzers),
+ * or to Touchstone FILE_PREFIX_N.s1p with -f s1p. With -A, each sweep is also
+ * appended to the binary sweep archive ARCHIVE.idx/ARCHIVE.dat. With -z, each
+ * sweep is followed by a dense sweep of ZOOM_STEPS around the SWR minimum.
+ * With -c, SWR is computed from RAW_SWR by the calibration table created by
+ * AntennaCalibrationCli. With -P bin, the points are transferred as binary
+ * frames with CRC (firmware 3.2lf and newer). -S selects the sweep profile
+ * (see SweepProfile; fast and precision need firmware 3.3lf and newer). The
+ * baud rate is negotiated up to MAX_BAUD (default 1000000, firmware 3.4lf and
+ * newer); -B 57600 disables the negotiation. -K on switches the ports to
+ * -hupcl after the analyzer answers, so the next run does not reset it; the
+ * tty setting stays after the program exits.
+ */
+public class AntennaAnalyzerCli {
+
+	private static final int EXIT_USAGE = 1;
+	private static final int EXIT_SWEEP = 3;
+
+	private static final int BAUD_RATE = 57600;
+	private static final int DISCOVERY_PROBE_MS = 500;
+
+	private List<String> ports = null;
+	private long startFreq = -1;
+	private long stopFreq = -1;
+	private int steps = 100;
+	private int repeat = 1;
+	private int zoomSteps = 0;
+	private String calibrationFile = null;
+	private String filePrefix = null;
+	private String fileFormat = "csv";
+	private String archiveName = null;
+	private String protocol = "text";
+	private SweepProfile profile = SweepProfile.NORMAL;
+	private int maxBaudRate = 1000000;
+	private boolean keepRunning = false;
+	private SweepArchive archive = null;
+	private long archiveTime = 0;
+
+	private Writer stdout;
+
+	/* exporter is not thread-safe, each device thread has its own */
+	private final ThreadLocal<SweepExporter> exporters = new ThreadLocal<SweepExporter>() {
+		@Override
+		protected SweepExporter initialValue() {
+			return new SweepExporter();
+		}
+	};
+
+	private static void usage(String error) {
+		if (error != null) {
+			System.err.println(error);
+		}
+		System.err.println("Usage: AntennaAnalyzerCli -p PORT[,PORT...] -a START_HZ -b STOP_HZ [-n STEPS] [-r REPEAT]"
+				+ " [-z ZOOM_STEPS] [-c CALIBRATION] [-o FILE_PREFIX] [-f csv|s1p] [-A ARCHIVE] [-P text|bin]"
+				+ " [-S fast|normal|precision] [-B MAX_BAUD] [-K on|off]");
+		System.exit(EXIT_USAGE);
+	}
+
+	/**
+	 * It parses command line arguments
+	 *
+	 * @param args
+	 */
+	private void parseArgs(String[] args) {
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+
+				if (i + 1 >= args.length) {
+					usage("Missing value of " + arg);
+				}
+
+				String value = args[++i];
+
+				switch (arg) {
+				case "-p":
+					ports = Arrays.asList(value.split(","));
+
+					if (new HashSet<String>(ports).size() < ports.size()) {
+						usage("Duplicate port in " + value);
+					}
+					break;
+				case "-a":
+					startFreq = Long.parseLong(value);
+					break;
+				case "-b":
+					stopFreq = Long.parseLong(value);
+					break;
+				case "-n":
+					steps = Integer.parseInt(value);
+					break;
+				case "-r":
+					repeat = Integer.parseInt(value);
+					break;
+				case "-z":
+					zoomSteps = Integer.parseInt(value);
+					break;
+				case "-c":
+					calibrationFile = value;
+					break;
+				case "-o":
+					filePrefix = value;
+					break;
+				case "-f":
+					fileFormat = value;
+					break;
+				case "-A":
+					archiveName = value;
+					break;
+				case "-P":
+					protocol = value;
+					break;
+				case "-B":
+					maxBaudRate = Integer.parseInt(value);
+					break;
+				case "-K":
+					if (!(value.equals("on") || value.equals("off"))) {
+						usage("Unknown value of -K: " + value);
+					}
+					keepRunning = value.equals("on");
+					break;
+				case "-S":
+					try {
+						profile = SweepProfile.valueOf(value.toUpperCase(Locale.ROOT));
+					} catch (IllegalArgumentException e) {
+						usage("Unknown profile " + value);
+					}
+					break;
+				default:
+					usage("Unknown option " + arg);
+				}
+			}
+		} catch (NumberFormatException e) {
+			usage("Not a number: " + e.getMessage());
+		}
+
+		if (ports == null || startFreq < 1 || stopFreq <= startFreq || steps < 1 || repeat < 1 || zoomSteps < 0
+				|| !(fileFormat.equals("csv") || fileFormat.equals("s1p"))
+				|| !(protocol.equals("text") || protocol.equals("bin"))) {
+			usage(null);
+		}
+	}
+
+	/**
+	 * It formats sweep points as CSV lines
+	 *
+	 * @param prefix
+	 *            columns written before each point
+	 * @param data
+	 * @param out
+	 */
+	static void formatSweep(String prefix, SweepData data, StringBuilder out) {
+		for (int index = 0; index < data.size(); index++) {
+			out.append(prefix);
+			out.append(data.getFreq(index)).append(',');
+			out.append(data.getSWR(index)).append(',');
+			out.append(data.getFwd(index)).append(',');
+			out.append(data.getRev(index)).append(',');
+			out.append(data.getRawSWR(index)).append('\n');
+		}
+	}
+
+	/**
+	 * Returns file name for a sweep
+	 *
+	 * @param port
+	 * @param sweepNumber
+	 * @return file name
+	 */
+	private String fileName(String port, int sweepNumber) {
+		if (ports.size() == 1) {
+			return filePrefix + "_" + sweepNumber + "." + fileFormat;
+		}
+		/* /dev/ttyUSB0 -> ttyUSB0 */
+		return filePrefix + "_" + port.substring(port.lastIndexOf('/') + 1) + "_" + sweepNumber + "." + fileFormat;
+	}
+
+	/**
+	 * It writes one finished sweep; it is called from device threads
+	 *
+	 * @param port
+	 * @param sweepNumber
+	 * @param data
+	 */
+	private void writeSweep(String port, int sweepNumber, SweepData data) {
+		try {
+			if (filePrefix == null) {
+				StringBuilder text = new StringBuilder(data.size() * 48);
+
+				formatSweep(port + "," + sweepNumber + ",", data, text);
+
+				synchronized (stdout) {
+					stdout.append(text);
+					stdout.flush();
+				}
+			} else if (fileFormat.equals("s1p")) {
+				exporters.get().writeTouchstone(fileName(port, sweepNumber), data);
+			} else {
+				exporters.get().writeCSV(fileName(port, sweepNumber), data);
+			}
+
+			if (archive != null) {
+				synchronized (archive) {
+					/* the archive needs time order, the clock can be set back */
+					archiveTime = Math.max(archiveTime, System.currentTimeMillis());
+					archive.append(archiveTime, port, data);
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot write the result", e);
+		}
+	}
+
+	/**
+	 * It runs all requested sweeps
+	 *
+	 * @return exit code
+	 * @throws InterruptedException
+	 * @throws IOException
+	 */
+	private int run() throws InterruptedException, IOException {
+		int exitCode = 0;
+
+		if (ports.equals(Arrays.asList("auto"))) {
+			ports = discoverPorts();
+
+			if (ports.isEmpty()) {
+				System.err.println("No analyzer found");
+				return EXIT_SWEEP;
+			}
+		}
+
+		MultiDeviceSweeper sweeper = new MultiDeviceSweeper(ports, BAUD_RATE);
+
+		sweeper.setZoomSteps(zoomSteps);
+		sweeper.setBinaryProtocol(protocol.equals("bin"));
+		sweeper.setSweepProfile(profile);
+		sweeper.setMaxBaudRate(maxBaudRate);
+		sweeper.setKeepRunning(keepRunning);
+
+		if (calibrationFile != null) {
+			sweeper.setCalibration(CalibrationTable.load(calibrationFile));
+		}
+
+		stdout = new BufferedWriter(new OutputStreamWriter(System.out));
+
+		if (filePrefix == null) {
+			stdout.write("Port,Sweep,Frequence_HZ,SWR,FWD,REV,RAW_SWR\n");
+		}
+
+		if (archiveName != null) {
+			archive = new SweepArchive(archiveName);
+		}
+
+		Map<String, MultiDeviceSweeper.DeviceResult> results;
+		try {
+			results = sweeper.run(startFreq, stopFreq, steps, repeat, new DeviceSweepListener() {
+				@Override
+				public void sweepFinished(String port, int sweepNumber, SweepData data) {
+					writeSweep(port, sweepNumber, data);
+				}
+			});
+		} finally {
+			if (archive != null) {
+				archive.close();
+			}
+		}
+
+		stdout.flush();
+
+		/* per-device summary */
+		for (MultiDeviceSweeper.DeviceResult result : results.values()) {
+			System.err.println(result.getPort() + ": " + result.getSweeps() + " sweeps, " + result.getPoints()
+					+ " points, " + result.getElapsedMs() + " ms");
+			printMetrics(result.getPort(), result.getMetrics());
+
+			if (result.getError() != null) {
+				StringBuilder lastLines = new StringBuilder();
+
+				System.err.println(result.getPort() + " failed: " + result.getError().getMessage());
+				result.getLog().appendLines(0, lastLines);
+				System.err.print(lastLines);
+				exitCode = EXIT_SWEEP;
+			}
+		}
+
+		return exitCode;
+	}
+
+	/**
+	 * It probes all serial ports in parallel
+	 * 
+	 * @return ports of found analyzers
+	 * @throws InterruptedException
+	 */
+	private static List<String> discoverPorts() throws InterruptedException {
+		AnalyzerDiscovery discovery = new AnalyzerDiscovery(BAUD_RATE, DISCOVERY_PROBE_MS);
+		long start = System.currentTimeMillis();
+		Map<String, String> analyzers;
+
+		try {
+			analyzers = discovery.probePorts(AnalyzerDiscovery.listPorts());
+		} finally {
+			discovery.stop();
+		}
+
+		for (Map.Entry<String, String> entry : analyzers.entrySet()) {
+			System.err.println(entry.getKey() + ": " + entry.getValue());
+		}
+		System.err.println(analyzers.size() + " analyzers found in " + (System.currentTimeMillis() - start) + " ms");
+		return new ArrayList<String>(analyzers.keySet());
+	}
+
+	/**
+	 * It prints p50/p99 of the device metrics to stderr
+	 *
+	 * @param port
+	 * @param metrics
+	 *            can be null when the port was not opened
+	 */
+	private static void printMetrics(String port, AnalyzerMetrics metrics) {
+		if (metrics == null) {
+			return;
+		}
+
+		MetricHistogram.Snapshot roundTrip = metrics.getCommandRoundTrip();
+		MetricHistogram.Snapshot sweepTime = metrics.getSweepTime();
+		MetricHistogram.Snapshot pointRate = metrics.getPointsPerSecond();
+		MetricHistogram.Snapshot parseTime = metrics.getParseTime();
+
+		System.err.println(port + ": p50/p99 command " + roundTrip.getP50() / 1000 + "/" + roundTrip.getP99() / 1000
+				+ " us, sweep " + sweepTime.getP50() / 1000000 + "/" + sweepTime.getP99() / 1000000 + " ms, "
+				+ pointRate.getP50() + " points/s, parse " + parseTime.getP50() + "/" + parseTime.getP99() + " ns, "
+				+ metrics.getBytesReceived() + " B received, " + metrics.getBytesSent() + " B sent");
+	}
+
+	/**
+	 * Main
+	 *
+	 * @param args
+	 * @throws InterruptedException
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws InterruptedException, IOException {
+		AntennaAnalyzerCli cli = new AntennaAnalyzerCli();
+
+		cli.parseArgs(args);
+		System.exit(cli.run());
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * AntennaCalibrationCli
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Command line SWR calibration
+ *
+ * It replaces utils/calibration/calibration.py. The user connects dummy
+ * loads one by one; for each load the 'f' command is performed. When the
+ * user enters an empty load, the polynomials are fitted and the table is
+ * saved. The table is used by AntennaAnalyzer and AntennaAnalyzerCli, no
+ * firmware build is needed. For 1 MHz intervals the table is also printed
+ * as Arduino calib_coefs initialization.
+ *
+ * Usage:
+ *
+ * AntennaCalibrationCli -p PORT -o TABLE_FILE [-w INTERVAL_HZ] [-s SWEEP_STEPS]
+ *
+ * With -s, each load is measured also by a sweep 1-30 MHz with SWEEP_STEPS
+ * steps, so intervals narrower than 1 MHz get their samples.
+ */
+public class AntennaCalibrationCli {
+
+	private static final int EXIT_USAGE = 1;
+	private static final int EXIT_CALIBRATION = 3;
+
+	private static final int BAUD_RATE = 57600;
+	private static final int READY_TIMEOUT_MS = 5000;
+	private static final int POINT_TIMEOUT_MS = 5000;
+
+	private static final long SWEEP_START_HZ = 1000000L;
+	private static final long SWEEP_STOP_HZ = 30000000L;
+
+	private String port = null;
+	private String tableFile = null;
+	private long intervalWidth = 1000000L;
+	private int sweepSteps = 0;
+
+	private static void usage(String error) {
+		if (error != null) {
+			System.err.println(error);
+		}
+		System.err.println("Usage: AntennaCalibrationCli -p PORT -o TABLE_FILE [-w INTERVAL_HZ] [-s SWEEP_STEPS]");
+		System.exit(EXIT_USAGE);
+	}
+
+	/**
+	 * It parses command line arguments
+	 *
+	 * @param args
+	 */
+	private void parseArgs(String[] args) {
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+
+				if (i + 1 >= args.length) {
+					usage("Missing value of " + arg);
+				}
+
+				String value = args[++i];
+
+				switch (arg) {
+				case "-p":
+					port = value;
+					break;
+				case "-o":
+					tableFile = value;
+					break;
+				case "-w":
+					intervalWidth = Long.parseLong(value);
+					break;
+				case "-s":
+					sweepSteps = Integer.parseInt(value);
+					break;
+				default:
+					usage("Unknown option " + arg);
+				}
+			}
+		} catch (NumberFormatException e) {
+			usage("Not a number: " + e.getMessage());
+		}
+
+		if (port == null || tableFile == null || intervalWidth < 1 || sweepSteps < 0) {
+			usage(null);
+		}
+	}
+
+	/**
+	 * It runs the calibration
+	 *
+	 * @return exit code
+	 * @throws InterruptedException
+	 * @throws IOException
+	 */
+	private int run() throws InterruptedException, IOException {
+		MonitorLog log = new MonitorLog(100);
+		ArduinoAnalyzerCom arduino = new ArduinoAnalyzerCom(BAUD_RATE, log);
+		CalibrationFitter fitter = new CalibrationFitter();
+		SweepData sweep = new SweepData(sweepSteps + 1);
+		BufferedReader console = new BufferedReader(new InputStreamReader(System.in));
+
+		if (!arduino.openPort(port)) {
+			System.err.println("Cannot open port " + port);
+			return EXIT_CALIBRATION;
+		}
+
+		try {
+			arduino.waitForReady(READY_TIMEOUT_MS);
+
+			while (true) {
+				System.out.print("Enter Calibration Load [Ohm], empty to finish: ");
+				System.out.flush();
+
+				String line = console.readLine();
+
+				if (line == null || line.trim().isEmpty()) {
+					break;
+				}
+
+				int resistor;
+
+				try {
+					resistor = Integer.parseInt(line.trim());
+				} catch (NumberFormatException e) {
+					System.err.println("Not a number: " + line);
+					continue;
+				}
+
+				int samples = arduino.performCalibrationRun(resistor, fitter);
+
+				if (sweepSteps > 0) {
+					arduino.performSweep(SWEEP_START_HZ, SWEEP_STOP_HZ, sweepSteps, POINT_TIMEOUT_MS, sweep, null);
+					fitter.addSweep(resistor, sweep);
+					samples += sweep.size();
+				}
+
+				System.out.println(resistor + " Ohm: " + samples + " samples");
+			}
+		} catch (Exception e) {
+			StringBuilder lastLines = new StringBuilder();
+
+			System.err.println("Calibration failed: " + e.getMessage());
+			log.appendLines(0, lastLines);
+			System.err.print(lastLines);
+			return EXIT_CALIBRATION;
+		} finally {
+			arduino.closePort();
+		}
+
+		long start = System.nanoTime();
+		CalibrationTable table = fitter.fit(intervalWidth, Runtime.getRuntime().availableProcessors());
+		int fitted = 0;
+
+		for (int i = 0; i < table.getIntervalCount(); i++) {
+			if (table.isValid(i)) {
+				fitted++;
+			}
+		}
+
+		table.save(tableFile);
+		System.out.println(fitted + " of " + table.getIntervalCount() + " intervals fitted from " + fitter.size()
+				+ " samples in " + (System.nanoTime() - start) / 1000000 + " ms, saved to " + tableFile);
+
+		if (intervalWidth == 1000000L) {
+			System.out.println("Arduino calib_coefs:");
+			System.out.print(table.toFirmwareSource());
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Main
+	 *
+	 * @param args
+	 * @throws InterruptedException
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws InterruptedException, IOException {
+		AntennaCalibrationCli cli = new AntennaCalibrationCli();
+
+		cli.parseArgs(args);
+		System.exit(cli.run());
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * ArchiveScanListener
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+/**
+ * Receives sweeps found by SweepArchive.scan
+ */
+public interface ArchiveScanListener {
+
+	/**
+	 * It is called for each sweep in the scanned range. Sweep data are reused
+	 * for next sweep of the scan.
+	 *
+	 * @param index
+	 *            sweep index in the archive
+	 * @param timestamp
+	 *            time of the sweep in ms since epoch
+	 * @param device
+	 *            device which measured the sweep
+	 * @param data
+	 *            points in the scanned frequency range
+	 */
+	void sweepFound(int index, long timestamp, String device, SweepData data);
+}
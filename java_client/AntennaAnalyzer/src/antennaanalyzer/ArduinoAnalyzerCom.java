@@ -0,0 +1,1098 @@
+
+/*
+ * ArduinoAnalyzerCom
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.prefs.Preferences;
+
+/**
+ * Arduino Antenna Analyzer protocol
+ * 
+ * The class does not depend on Swing; errors are reported by exceptions and
+ * the communication is logged to MonitorLog. It is used by the GUI as well as
+ * by the command line client.
+ */
+public class ArduinoAnalyzerCom {
+
+	/* how long a serial read may block before the reader checks a stop request */
+	private static final int READ_POLL_MS = 100;
+
+	/* max wait time for results of setup commands */
+	private static final int SETUP_TIMEOUT_MS = 1000;
+
+	/* max wait time for the version of a running Arduino after connect */
+	private static final int PROBE_TIMEOUT_MS = 300;
+
+	/* max wait time for "#OK#" of an aborted sweep */
+	private static final int ABORT_TIMEOUT_MS = 3000;
+
+	/* 'f' command measures each interval 16 times with 100 ms delay */
+	private static final int CALIBRATION_POINT_TIMEOUT_MS = 5000;
+
+	/* baud rates supported by 'u' command (firmware 3.4lf and newer), the highest first */
+	private static final int[] BAUD_RATES = { 1000000, 500000, 250000, 115200 };
+
+	/* Arduino waits 1 s for the confirmation of a new baud rate, then it switches back */
+	private static final int BAUD_CONFIRM_MS = 1000;
+	private static final int BAUD_VERIFY_TIMEOUT_MS = 500;
+
+	/* negotiated baud rates per port */
+	private static final Preferences BAUD_PREFS = Preferences.userRoot().node("AntennaAnalyzer/baudrate");
+
+	private AnalyzerLink link;
+	private String portName;
+	private volatile boolean portconnected = false;
+	private final int initialBaudRate;
+	private int baudRate;
+	private SerialLineReader reader;
+	private final SweepLineParser sweepParser = new SweepLineParser();
+	private final SweepFrameCodec frameCodec = new SweepFrameCodec();
+	private final String[] sweepSetup = new String[3];
+	private final String[] profileSetup = new String[2];
+
+	/* range which is set in Arduino; -1 means unknown */
+	private long setupStartFreq = -1;
+	private long setupStopFreq = -1;
+	private int setupSteps = -1;
+
+	/* point timeout of an aborted sweep which Arduino may still send; 0 = none */
+	private int abortedSweepTimeout = 0;
+
+	/* profile which is set in Arduino; null means unknown */
+	private SweepProfile setupProfile = null;
+	private volatile SweepProfile sweepProfile = SweepProfile.NORMAL;
+	private String token;
+	private MonitorLog arduinoMonitor;
+
+	/* SWR is computed from RAW_SWR by the table; null = Arduino SWR is used */
+	private volatile CalibrationTable calibration = null;
+
+	/* sweep by 'x' command (firmware 3.2lf and newer) */
+	private volatile boolean binaryProtocol = false;
+
+	/* the port keeps the analyzer running after close (see AnalyzerLink) */
+	private volatile boolean keepRunning = false;
+
+	private final AnalyzerMetrics metrics = new AnalyzerMetrics();
+
+	/**
+	 * It prepares a connection to Arduino
+	 * 
+	 * @param BaudRate
+	 * @param textMonitor
+	 *            log of sent commands and received lines
+	 */
+	public ArduinoAnalyzerCom(int BaudRate, MonitorLog textMonitor) {
+		initialBaudRate = BaudRate;
+		baudRate = BaudRate;
+		arduinoMonitor = textMonitor;
+	}
+
+	/**
+	 * It establishes a connection to Arduino
+	 * 
+	 * Port names starting with "virtual" open the simulated analyzer (see
+	 * VirtualAnalyzer).
+	 * 
+	 * @param COMPort
+	 * @return Was port opened?
+	 */
+	public boolean openPort(String COMPort) {
+		if (COMPort.startsWith(VirtualAnalyzer.PORT_PREFIX)) {
+			return openLink(VirtualAnalyzer.create(COMPort));
+		}
+		return openLink(new SerialAnalyzerLink(COMPort, initialBaudRate, READ_POLL_MS));
+	}
+
+	/**
+	 * It establishes a connection to an analyzer
+	 * 
+	 * @param in_link
+	 *            link which is not opened yet
+	 * @return Was link opened?
+	 */
+	public boolean openLink(AnalyzerLink in_link) {
+		link = in_link;
+		portName = link.getName();
+
+		/* Arduino resets itself when the port is opened, a negotiated rate is lost */
+		baudRate = initialBaudRate;
+
+		portconnected = link.open();
+		setupSteps = -1;
+		abortedSweepTimeout = 0;
+
+		/* Arduino resets itself when the port is opened, it uses default settle time */
+		setupProfile = SweepProfile.NORMAL;
+
+		if (portconnected) {
+			reader = new SerialLineReader(link.getInputStream(), metrics);
+			reader.start("Arduino reader " + portName);
+		}
+
+		return portconnected;
+
+	}
+
+	/**
+	 * Close the Serial port
+	 * 
+	 * @return Successful or not
+	 */
+	public boolean closePort() {
+		portconnected = false;
+
+		if (reader != null) {
+			reader.stop(2 * READ_POLL_MS);
+			reader = null;
+		}
+
+		return link.close();
+	}
+
+	/**
+	 * It sets the calibration which is applied to received sweep points
+	 * 
+	 * @param table
+	 *            null means SWR computed by Arduino
+	 */
+	public void setCalibration(CalibrationTable table) {
+		calibration = table;
+	}
+
+	public CalibrationTable getCalibration() {
+		return calibration;
+	}
+
+	/**
+	 * It selects the sweep protocol
+	 * 
+	 * @param enabled
+	 *            true - binary frames ('x' command), false - text lines ('s'
+	 *            command)
+	 */
+	public void setBinaryProtocol(boolean enabled) {
+		binaryProtocol = enabled;
+	}
+
+	/**
+	 * It asks the link to keep the analyzer running after close when an
+	 * analyzer answers in waitForReady
+	 * 
+	 * A serial port is switched to -hupcl by stty; the setting stays after
+	 * the program exits.
+	 * 
+	 * @param enabled
+	 */
+	public void setKeepRunning(boolean enabled) {
+		keepRunning = enabled;
+	}
+
+	public boolean isBinaryProtocol() {
+		return binaryProtocol;
+	}
+
+	/**
+	 * It sets the profile of next sweeps
+	 * 
+	 * Other profiles than NORMAL need firmware 3.3lf and newer.
+	 * 
+	 * @param profile
+	 */
+	public void setSweepProfile(SweepProfile profile) {
+		sweepProfile = profile;
+	}
+
+	public SweepProfile getSweepProfile() {
+		return sweepProfile;
+	}
+
+	/**
+	 * @return metrics of commands and sweeps of this connection
+	 */
+	public AnalyzerMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return current baud rate
+	 */
+	public int getBaudRate() {
+		return baudRate;
+	}
+
+	private void checkConnected() throws IOException {
+		if (!portconnected) {
+			throw new IOException("Port is not connected");
+		}
+	}
+
+	/**
+	 * Waits until Arduino is ready for commands
+	 * 
+	 * Arduino resets itself when the port opening activates DTR; the start
+	 * takes about 3 s (analog inputs are calibrated). The link can avoid the
+	 * reset (see setKeepRunning), therefore Arduino is probed by 'v' first -
+	 * at the baud rate negotiated last time and at the initial rate.
+	 * A running Arduino keeps its baud rate and analog input offsets;
+	 * otherwise the method waits for the end of the start. A probe sent at
+	 * the end of the start can be answered after it, therefore late replies
+	 * are drained before the method returns.
+	 * 
+	 * @param timeout
+	 *            max wait time for the start in ms; it is a limit of the
+	 *            whole wait, so a device which keeps sending other lines
+	 *            does not block the caller
+	 * @return true if a running Arduino was found (no reset)
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws TimeoutException
+	 */
+	public boolean waitForReady(int timeout)
+			throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		if (probe(PROBE_TIMEOUT_MS) != null) {
+			arduinoMonitor.add("Analyzer is running, baud rate: " + baudRate);
+			keepRunningAfterClose();
+			return true;
+		}
+
+		long deadline = System.currentTimeMillis() + timeout;
+
+		while (!nextLineTimeout((int) Math.max(deadline - System.currentTimeMillis(), 0)).equals("#OK#")) {
+			// boot messages are only logged
+		}
+
+		drainReplies(PROBE_TIMEOUT_MS, timeout);
+		keepRunningAfterClose();
+		return false;
+	}
+
+	/**
+	 * It asks the link to keep the analyzer running if it is enabled; a
+	 * failure is only logged, the next connect waits for the start
+	 */
+	private void keepRunningAfterClose() {
+		if (!keepRunning) {
+			return;
+		}
+
+		try {
+			link.keepAnalyzerRunning();
+		} catch (IOException e) {
+			arduinoMonitor.add("Analyzer is reset by next connect: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * It reads lines until Arduino is quiet, e.g. late replies of probes
+	 * which would be taken as the answer to the next command
+	 * 
+	 * @param quiet
+	 *            time without any line in ms
+	 * @param timeout
+	 *            max wait time in ms
+	 * @throws IOException
+	 *             Arduino does not stop sending
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	private void drainReplies(int quiet, int timeout) throws IOException, InterruptedException, ExecutionException {
+		long deadline = System.currentTimeMillis() + timeout;
+
+		try {
+			while (System.currentTimeMillis() < deadline) {
+				nextLineTimeout(quiet);
+			}
+		} catch (TimeoutException e) {
+			return;
+		}
+
+		throw new IOException("Arduino does not stop sending");
+	}
+
+	/**
+	 * It looks for a running Arduino at the remembered and the initial baud
+	 * rate
+	 * 
+	 * Bytes sent at a wrong rate are received as characters which Arduino
+	 * ignores. It is used after the port is opened (instead of
+	 * waitForReady) to find out whether an analyzer is connected.
+	 * 
+	 * @param timeout
+	 *            max wait time for each baud rate in ms
+	 * @return version line, e.g. "Version: 3.5lf", or null if Arduino did
+	 *         not answer
+	 * @throws IOException
+	 *             port is not connected
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public String probe(int timeout) throws IOException, InterruptedException, ExecutionException {
+		int remembered = BAUD_PREFS.getInt(portName, 0);
+		String version = null;
+
+		if (remembered > 0 && remembered != baudRate) {
+			link.setBaudRate(remembered);
+			version = probeVersion(timeout);
+
+			if (version != null) {
+				baudRate = remembered;
+			} else {
+				link.setBaudRate(baudRate);
+			}
+		}
+
+		if (version == null) {
+			version = probeVersion(timeout);
+		}
+
+		if (version != null) {
+			/* the profile was set by the previous connection */
+			setupProfile = null;
+		}
+		return version;
+	}
+
+	/**
+	 * It sends 'v' and waits for the version and "#OK#"
+	 * 
+	 * Other lines are skipped (e.g. the rest of a sweep which was aborted
+	 * by 'v').
+	 * 
+	 * @param timeout
+	 *            max wait time in ms
+	 * @return version line or null if it was not received
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	private String probeVersion(int timeout) throws IOException, InterruptedException, ExecutionException {
+		long deadline = System.currentTimeMillis() + timeout;
+		String version = null;
+
+		sendCommand("v");
+
+		try {
+			while (true) {
+				String line = nextLineTimeout((int) Math.max(deadline - System.currentTimeMillis(), 0));
+
+				if (line.startsWith("Version: ")) {
+					version = line;
+				} else if (version != null && line.equals("#OK#")) {
+					return version;
+				}
+			}
+		} catch (TimeoutException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * It sends a command to arduino
+	 * 
+	 * @param bytes
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void sendCommand(String bytes) throws IOException, InterruptedException {
+		checkConnected();
+
+		if (abortedSweepTimeout > 0) {
+			try {
+				finishAbortedSweep(0);
+			} catch (ExecutionException e) {
+				throw new IOException("Aborted sweep cannot be finished", e);
+			}
+		}
+
+		/* lines left from an aborted command would be taken as the answer */
+		reader.clear();
+
+		OutputStream out = link.getOutputStream();
+		byte[] data = bytes.getBytes();
+
+		out.write(data);
+		out.flush();
+		metrics.addBytesSent(data.length);
+		arduinoMonitor.add("Send command: " + bytes);
+	}
+
+	/**
+	 * Gets nextlines with Timeout
+	 * 
+	 * @param timeout
+	 *            max wait time for the line in ms
+	 * @return received line
+	 * @throws IOException
+	 *             port is not connected
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 *             serial port read failed (e.g. USB cable was disconnected)
+	 * @throws TimeoutException
+	 *             Arduino did not send a line within timeout
+	 */
+	public String nextLineTimeout(int timeout)
+			throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		checkConnected();
+
+		token = reader.nextLine(timeout);
+		arduinoMonitor.add("Received: " + token);
+		return token;
+	}
+
+	/**
+	 * Gets next sweep point with Timeout
+	 * 
+	 * The line is parsed directly from received bytes and the point is added
+	 * to sweep data.
+	 * 
+	 * @param timeout
+	 *            max wait time for the line in ms
+	 * @param data
+	 *            sweep data where the point is added
+	 * @return true if a point was added, false if the sweep end (#OK#) was
+	 *         received
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 *             serial port read failed (e.g. USB cable was disconnected)
+	 * @throws TimeoutException
+	 *             Arduino did not send a line within timeout
+	 * @throws IOException
+	 *             port is not connected or received line is not a sweep line
+	 */
+	public boolean nextSweepPoint(int timeout, SweepData data)
+			throws InterruptedException, ExecutionException, TimeoutException, IOException {
+		checkConnected();
+
+		SerialLineReader.Line line = reader.nextRawLine(timeout);
+
+		try {
+			if (line.equalsText("#OK#")) {
+				arduinoMonitor.add("Received: #OK#");
+				return false;
+			}
+
+			/* sweep points can be skipped, no String is created then */
+			if (arduinoMonitor.isSweepPointsEnabled()) {
+				arduinoMonitor.add("Received: " + line);
+			}
+
+			long parseStart = System.nanoTime();
+
+			if (!sweepParser.parse(line.getData(), line.getLength(), data)) {
+				throw new IOException("Unexpected sweep line: " + line);
+			}
+
+			calibrateLastPoint(data);
+			metrics.recordParseTime(System.nanoTime() - parseStart);
+			return true;
+		} finally {
+			reader.recycle(line);
+		}
+	}
+
+	/**
+	 * Gets next binary sweep point with Timeout
+	 * 
+	 * The frame is decoded directly from received bytes and the point is added
+	 * to sweep data. The header has to be passed to the codec before the first
+	 * point.
+	 * 
+	 * @param timeout
+	 *            max wait time for the frame in ms
+	 * @param data
+	 *            sweep data where the point is added
+	 * @return true if a point was added, false if the sweep end (#OK#) was
+	 *         received
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 *             serial port read failed (e.g. USB cable was disconnected)
+	 * @throws TimeoutException
+	 *             Arduino did not send a frame within timeout
+	 * @throws IOException
+	 *             port is not connected, CRC error or a point is missing
+	 */
+	public boolean nextSweepFrame(int timeout, SweepData data)
+			throws InterruptedException, ExecutionException, TimeoutException, IOException {
+		checkConnected();
+
+		SerialLineReader.Line line = reader.nextRawLine(timeout);
+
+		try {
+			if (line.equalsText("#OK#")) {
+				arduinoMonitor.add("Received: #OK#");
+				return false;
+			}
+
+			long parseStart = System.nanoTime();
+
+			frameCodec.decode(line.getData(), line.getLength(), data);
+
+			long parseTime = System.nanoTime() - parseStart;
+
+			int index = data.size() - 1;
+
+			/* frame bytes are not readable, the decoded point is logged */
+			if (arduinoMonitor.isSweepPointsEnabled()) {
+				arduinoMonitor.add("Received: " + data.getFreq(index) + ", " + data.getSWR(index) + ", "
+						+ data.getFwd(index) + ", " + data.getRev(index) + ", " + data.getRawSWR(index));
+			}
+
+			/* logging is not included in parse time */
+			parseStart = System.nanoTime();
+			calibrateLastPoint(data);
+			metrics.recordParseTime(parseTime + System.nanoTime() - parseStart);
+			return true;
+		} finally {
+			reader.recycle(line);
+		}
+	}
+
+	private void calibrateLastPoint(SweepData data) {
+		CalibrationTable table = calibration;
+
+		if (table != null) {
+			int index = data.size() - 1;
+			data.setSWR(index, table.correct(data.getFreq(index), data.getRawSWR(index)));
+		}
+	}
+
+	/**
+	 * Sends One command where command result is not expected (dummy command)
+	 * 
+	 * @param bytes
+	 * @param timeout
+	 * @return received string
+	 * @throws IOException
+	 *             port is not connected or Arduino did not confirm the command
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws TimeoutException
+	 */
+	public String sendOneShotCommand(String bytes, int timeout)
+			throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		String str;
+		long sent = System.nanoTime();
+
+		sendCommand(bytes);
+		str = nextLineTimeout(timeout);
+
+		if (!str.equals("#OK#")) {
+			throw new IOException("Unexpected result of command " + bytes + ": " + str);
+		}
+
+		metrics.recordCommandRoundTrip(System.nanoTime() - sent);
+		return str;
+	}
+
+	/**
+	 * Sends a batch of commands in one write and waits for their results
+	 * 
+	 * Arduino processes the commands in order, therefore the n-th "#OK#" is
+	 * the result of the n-th command. Only commands which return nothing but
+	 * "#OK#" (e.g. 'a', 'b', 'n') can be sent in a batch. The whole batch has
+	 * to fit into Arduino serial buffer (64 bytes).
+	 * 
+	 * @param commands
+	 * @param timeout
+	 *            max wait time for all results in ms
+	 * @return received results in the order of commands
+	 * @throws IOException
+	 *             port is not connected or Arduino did not confirm a command
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws TimeoutException
+	 */
+	public String[] sendCommandBatch(String[] commands, int timeout)
+			throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		StringBuilder batch = new StringBuilder();
+		String[] results = new String[commands.length];
+		long deadline = System.currentTimeMillis() + timeout;
+		long sent = System.nanoTime();
+
+		for (String cmd : commands) {
+			batch.append(cmd);
+		}
+
+		sendCommand(batch.toString());
+
+		for (int i = 0; i < commands.length; i++) {
+			int remaining = (int) Math.max(deadline - System.currentTimeMillis(), 0);
+
+			results[i] = nextLineTimeout(remaining);
+
+			if (!results[i].equals("#OK#")) {
+				throw new IOException("Unexpected result of command " + commands[i] + ": " + results[i]);
+			}
+		}
+
+		/* one round trip for the whole batch */
+		metrics.recordCommandRoundTrip(System.nanoTime() - sent);
+		return results;
+	}
+
+	/**
+	 * Performs one calibration run ('f' command) with a dummy load
+	 * 
+	 * Arduino measures RAW_SWR in the middle of each 1 MHz interval and sends
+	 * lines <EXPECTED_SWR, FREQUENCY_HZ, RAW_SWR>.
+	 * 
+	 * @param resistor
+	 *            dummy load in Ohm
+	 * @param fitter
+	 *            received samples are added to it
+	 * @return number of received samples
+	 * @throws IOException
+	 *             port is not connected or a received line is not a
+	 *             calibration line
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws TimeoutException
+	 */
+	public int performCalibrationRun(int resistor, CalibrationFitter fitter)
+			throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		int samples = 0;
+
+		/* 'f' changes DDS frequency, the sweep range has to be set again */
+		setupSteps = -1;
+		sendCommand(resistor + "f");
+
+		while (true) {
+			String line = nextLineTimeout(CALIBRATION_POINT_TIMEOUT_MS);
+
+			if (line.equals("#OK#")) {
+				return samples;
+			}
+
+			String[] items = line.split(",");
+
+			try {
+				if (items.length != 3) {
+					throw new NumberFormatException();
+				}
+				fitter.add(Float.parseFloat(items[0].trim()), Long.parseLong(items[1].trim()),
+						Float.parseFloat(items[2].trim()));
+				samples++;
+			} catch (NumberFormatException e) {
+				throw new IOException("Unexpected calibration line: " + line);
+			}
+		}
+	}
+
+	/**
+	 * It reads the firmware version ('v' command)
+	 * 
+	 * @param timeout
+	 *            max wait time in ms
+	 * @return version line, e.g. "Version: 3.4lf"
+	 * @throws IOException
+	 *             port is not connected or Arduino did not confirm the command
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws TimeoutException
+	 */
+	public String getFirmwareVersion(int timeout)
+			throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		long deadline = System.currentTimeMillis() + timeout;
+		long sent = System.nanoTime();
+		String version = null;
+
+		sendCommand("v");
+
+		while (true) {
+			String line = nextLineTimeout((int) Math.max(deadline - System.currentTimeMillis(), 0));
+
+			if (line.equals("#OK#")) {
+				break;
+			}
+			if (line.startsWith("Version: ")) {
+				version = line;
+			}
+		}
+
+		if (version == null) {
+			throw new IOException("Version was not received");
+		}
+
+		metrics.recordCommandRoundTrip(System.nanoTime() - sent);
+		return version;
+	}
+
+	/**
+	 * Compares the firmware version
+	 * 
+	 * @param version
+	 *            version line, e.g. "Version: 3.4lf"
+	 * @param major
+	 * @param minor
+	 * @return true if the version is major.minor or newer
+	 */
+	public static boolean isVersionAtLeast(String version, int major, int minor) {
+		String number = version.substring("Version: ".length()).replaceAll("[^0-9.].*$", "");
+		String[] items = number.split("\\.");
+
+		try {
+			int verMajor = Integer.parseInt(items[0]);
+			int verMinor = (items.length > 1) ? Integer.parseInt(items[1]) : 0;
+
+			return verMajor > major || (verMajor == major && verMinor >= minor);
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Negotiates the highest baud rate supported by Arduino, USB converter and
+	 * the port
+	 * 
+	 * It is called after waitForReady. The rate which was chosen for the port
+	 * last time is tried first; when it does not work, rates from maxBaudRate
+	 * down are tried. Each change is verified by 'v' command at the new rate;
+	 * when it fails, both sides return to the previous rate. The chosen rate
+	 * is remembered per port. Firmware older than 3.4lf keeps the initial
+	 * rate.
+	 * 
+	 * @param maxBaudRate
+	 * @return chosen baud rate
+	 * @throws IOException
+	 *             Arduino does not respond at any rate
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws TimeoutException
+	 */
+	public int negotiateBaudRate(int maxBaudRate)
+			throws IOException, InterruptedException, ExecutionException, TimeoutException {
+
+		if (!isVersionAtLeast(getFirmwareVersion(SETUP_TIMEOUT_MS), 3, 4)) {
+			return baudRate;
+		}
+
+		int remembered = BAUD_PREFS.getInt(portName, 0);
+
+		if (remembered > 0 && remembered <= maxBaudRate) {
+			if (remembered == baudRate || changeBaudRate(remembered)) {
+				arduinoMonitor.add("Baud rate: " + baudRate);
+				return baudRate;
+			}
+		}
+
+		for (int rate : BAUD_RATES) {
+			if (rate <= maxBaudRate && rate > baudRate && changeBaudRate(rate)) {
+				break;
+			}
+		}
+
+		BAUD_PREFS.putInt(portName, baudRate);
+		arduinoMonitor.add("Baud rate: " + baudRate);
+		return baudRate;
+	}
+
+	/**
+	 * It switches Arduino and the port to a new baud rate and verifies it
+	 * 
+	 * @param rate
+	 * @return true if the new rate works; false if the previous rate is used
+	 * @throws IOException
+	 *             Arduino does not respond at any rate
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws TimeoutException
+	 */
+	private boolean changeBaudRate(int rate)
+			throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		int previous = baudRate;
+
+		sendCommand(rate + "u");
+
+		String reply = nextLineTimeout(SETUP_TIMEOUT_MS);
+
+		if (!nextLineTimeout(SETUP_TIMEOUT_MS).equals("#OK#")) {
+			throw new IOException("Unexpected result of command " + rate + "u");
+		}
+
+		/* Arduino does not support the rate */
+		if (!reply.equals("Baud: " + rate)) {
+			return false;
+		}
+
+		link.setBaudRate(rate);
+
+		if (verifyBaudRate(BAUD_VERIFY_TIMEOUT_MS)) {
+			baudRate = rate;
+			return true;
+		}
+
+		arduinoMonitor.add("Baud rate " + rate + " does not work");
+
+		/* Arduino switches back when it does not get 'v' */
+		link.setBaudRate(previous);
+		Thread.sleep(BAUD_CONFIRM_MS);
+
+		if (verifyBaudRate(SETUP_TIMEOUT_MS)) {
+			return false;
+		}
+
+		/* Arduino got 'v' but its answer was lost */
+		link.setBaudRate(rate);
+
+		if (verifyBaudRate(SETUP_TIMEOUT_MS)) {
+			baudRate = rate;
+			return true;
+		}
+
+		throw new IOException("Arduino does not respond after baud rate change");
+	}
+
+	private boolean verifyBaudRate(int timeout) throws IOException, InterruptedException, ExecutionException {
+		try {
+			getFirmwareVersion(timeout);
+			return true;
+		} catch (TimeoutException | IOException e) {
+			checkConnected();
+			return false;
+		}
+	}
+
+	/**
+	 * Stops a running sweep and discards its remaining output
+	 * 
+	 * Arduino stops the sweep before the next point when it receives '!'
+	 * (firmware 3.5lf and newer) and sends "#OK#". All lines up to it are
+	 * discarded (see finishAbortedSweep). Older firmware ignores '!' and
+	 * finishes the sweep first, the rest of the sweep is discarded too, so
+	 * the next command does not receive sweep points. When the abort is
+	 * interrupted or fails, the sweep is finished by the next command.
+	 * 
+	 * It is called after an interrupt, the interrupt status is set again
+	 * when the method returns.
+	 * 
+	 * @param pointTimeout
+	 *            max wait time for each point of the sweep in ms
+	 */
+	private void abortSweep(int pointTimeout) {
+		abortedSweepTimeout = pointTimeout;
+
+		try {
+			OutputStream out = link.getOutputStream();
+
+			/* sendCommand cannot be used, it would discard "#OK#" which can be already received */
+			out.write('!');
+			out.flush();
+			metrics.addBytesSent(1);
+			arduinoMonitor.add("Send command: !");
+
+			finishAbortedSweep(ABORT_TIMEOUT_MS);
+		} catch (IOException | ExecutionException e) {
+			arduinoMonitor.add("Sweep abort failed: " + e.getMessage());
+			setupSteps = -1;
+		} catch (InterruptedException e) {
+			arduinoMonitor.add("Sweep abort interrupted");
+			setupSteps = -1;
+		} finally {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * It discards lines of the aborted sweep up to its "#OK#"
+	 * 
+	 * Arduino which stops the sweep sends "#OK#" within abortTimeout. Then
+	 * the points of a sweep which is finished by Arduino are discarded
+	 * while they come within the point timeout; when Arduino is quiet for
+	 * it, the sweep is over and its end was lost. The range is unknown then.
+	 * 
+	 * @param abortTimeout
+	 *            max wait time for the stop of the sweep in ms
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	private void finishAbortedSweep(int abortTimeout) throws IOException, InterruptedException, ExecutionException {
+		long deadline = System.currentTimeMillis() + abortTimeout;
+		boolean stopped = true;
+
+		checkConnected();
+
+		while (true) {
+			int timeout = stopped ? (int) Math.max(deadline - System.currentTimeMillis(), 0) : abortedSweepTimeout;
+			SerialLineReader.Line line;
+
+			try {
+				line = reader.nextRawLine(timeout);
+			} catch (TimeoutException e) {
+				if (stopped) {
+					arduinoMonitor.add("Sweep is not stopped, waiting for its end");
+					stopped = false;
+					continue;
+				}
+
+				arduinoMonitor.add("Sweep end was not received");
+				setupSteps = -1;
+				break;
+			}
+
+			boolean end = line.equalsText("#OK#");
+
+			reader.recycle(line);
+
+			if (end) {
+				arduinoMonitor.add(stopped ? "Sweep aborted" : "Sweep finished");
+				break;
+			}
+		}
+
+		abortedSweepTimeout = 0;
+	}
+
+	/**
+	 * Sets sweep range and sweep profile in Arduino
+	 * 
+	 * The commands are not sent when Arduino already uses the same range and
+	 * profile.
+	 * 
+	 * @param startFreq
+	 *            in Hz
+	 * @param stopFreq
+	 *            in Hz
+	 * @param steps
+	 *            number of steps; Arduino sends steps + 1 points
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws TimeoutException
+	 */
+	public void setupSweep(long startFreq, long stopFreq, int steps)
+			throws IOException, InterruptedException, ExecutionException, TimeoutException {
+
+		SweepProfile profile = sweepProfile;
+
+		if (profile != setupProfile) {
+			setupProfile = null;
+
+			profileSetup[0] = profile.getSettleTime() + "d";
+			profileSetup[1] = profile.getSamples() + "m";
+			sendCommandBatch(profileSetup, SETUP_TIMEOUT_MS);
+
+			setupProfile = profile;
+		}
+
+		if (startFreq == setupStartFreq && stopFreq == setupStopFreq && steps == setupSteps) {
+			return;
+		}
+
+		/* Arduino state is unknown until all commands are confirmed */
+		setupSteps = -1;
+
+		sweepSetup[0] = startFreq + "a";
+		sweepSetup[1] = stopFreq + "b";
+		sweepSetup[2] = steps + "n";
+		sendCommandBatch(sweepSetup, SETUP_TIMEOUT_MS);
+
+		setupStartFreq = startFreq;
+		setupStopFreq = stopFreq;
+		setupSteps = steps;
+	}
+
+	/**
+	 * Performs one sweep
+	 * 
+	 * It sets the range, starts the sweep and collects all points to sweep
+	 * data. The points are received as text lines or as binary frames (see
+	 * setBinaryProtocol). The listener is informed about each point as soon as it is
+	 * received. Sweep time, points per second and bytes per second of each
+	 * finished sweep are recorded to metrics.
+	 * 
+	 * When the thread is interrupted during the sweep, Arduino is asked to
+	 * stop the sweep (see abortSweep) and InterruptedException is thrown
+	 * after the link is idle again.
+	 * 
+	 * @param startFreq
+	 *            in Hz
+	 * @param stopFreq
+	 *            in Hz
+	 * @param steps
+	 *            number of steps; Arduino sends steps + 1 points
+	 * @param pointTimeout
+	 *            max wait time for each point in ms
+	 * @param data
+	 *            sweep data; it is cleaned before the sweep
+	 * @param listener
+	 *            can be null
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws TimeoutException
+	 */
+	public void performSweep(long startFreq, long stopFreq, int steps, int pointTimeout, SweepData data,
+			SweepListener listener) throws IOException, InterruptedException, ExecutionException, TimeoutException {
+
+		long sweepStart = System.nanoTime();
+		long received = metrics.getBytesReceived();
+		long sent = metrics.getBytesSent();
+
+		setupSweep(startFreq, stopFreq, steps);
+
+		data.clear();
+
+		try {
+			if (binaryProtocol) {
+				sendCommand("x");
+				frameCodec.startSweep(nextLineTimeout(pointTimeout));
+
+				while (nextSweepFrame(pointTimeout, data)) {
+					if (listener != null) {
+						listener.sweepPoint(data, data.size() - 1);
+					}
+				}
+
+				if (data.size() != frameCodec.getPoints()) {
+					throw new IOException("Received " + data.size() + " of " + frameCodec.getPoints() + " sweep points");
+				}
+			} else {
+				sendCommand("s");
+
+				while (nextSweepPoint(pointTimeout, data)) {
+					if (listener != null) {
+						listener.sweepPoint(data, data.size() - 1);
+					}
+				}
+			}
+		} catch (IOException | ExecutionException | TimeoutException e) {
+			/* the sweep was not finished, Arduino can be in any state */
+			setupSteps = -1;
+			throw e;
+		} catch (InterruptedException e) {
+			abortSweep(pointTimeout);
+			throw e;
+		}
+
+		metrics.recordSweep(System.nanoTime() - sweepStart, data.size(), metrics.getBytesReceived() - received,
+				metrics.getBytesSent() - sent);
+	}
+}
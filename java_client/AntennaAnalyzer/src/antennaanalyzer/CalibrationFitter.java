@@ -0,0 +1,303 @@
+/*
+ * CalibrationFitter
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Computes CalibrationTable from calibration samples
+ *
+ * A sample is <EXPECTED_SWR, FREQUENCY, RAW_SWR>; it comes from the 'f'
+ * command or from a sweep with a known dummy load (EXPECTED_SWR =
+ * resistor / 50). For each frequency interval, the polynomial of order 3
+ * RAW_SWR -> EXPECTED_SWR is fitted by least squares. Intervals are fitted
+ * in parallel.
+ *
+ * Samples are added from one thread; fit() can be called any time.
+ */
+public class CalibrationFitter {
+
+	private static final int ORDER = 3;
+	private static final int COEFS = ORDER + 1;
+
+	private long[] freq = new long[256];
+	private float[] expected = new float[256];
+	private float[] raw = new float[256];
+	private int size = 0;
+
+	/**
+	 * It adds one calibration sample
+	 *
+	 * @param in_expected
+	 *            expected SWR (dummy load / 50 Ohm)
+	 * @param in_freq
+	 *            in Hz
+	 * @param in_raw
+	 *            RAW_SWR measured by the analyzer
+	 */
+	public void add(float in_expected, long in_freq, float in_raw) {
+		if (size == freq.length) {
+			freq = Arrays.copyOf(freq, size * 2);
+			expected = Arrays.copyOf(expected, size * 2);
+			raw = Arrays.copyOf(raw, size * 2);
+		}
+		freq[size] = in_freq;
+		expected[size] = in_expected;
+		raw[size] = in_raw;
+		size++;
+	}
+
+	/**
+	 * It adds all points of a sweep measured with a dummy load
+	 *
+	 * @param resistor
+	 *            dummy load in Ohm
+	 * @param data
+	 *            sweep; RAW_SWR column is used
+	 */
+	public void addSweep(int resistor, SweepData data) {
+		for (int index = 0; index < data.size(); index++) {
+			add(resistor / 50.0f, data.getFreq(index), data.getRawSWR(index));
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Fits polynomials of all intervals
+	 *
+	 * An interval is corrected only when it has samples of at least four
+	 * different raw SWR values.
+	 *
+	 * @param intervalWidth
+	 *            in Hz; Arduino uses 1 MHz
+	 * @param threads
+	 *            number of fitting threads
+	 * @return calibration table
+	 * @throws InterruptedException
+	 */
+	public CalibrationTable fit(long intervalWidth, int threads) throws InterruptedException {
+		int intervals = 0;
+
+		for (int i = 0; i < size; i++) {
+			intervals = (int) Math.max(intervals, freq[i] / intervalWidth + 1);
+		}
+
+		/* sample indexes sorted by interval - each task reads only its part */
+		final int[] first = new int[intervals + 1];
+		final int[] order = sortByInterval(intervalWidth, first);
+
+		final double[] coefs = new double[intervals * COEFS];
+		final boolean[] valid = new boolean[intervals];
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+
+		try {
+			for (int interval = 0; interval < intervals; interval++) {
+				final int index = interval;
+
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						valid[index] = fitInterval(order, first[index], first[index + 1], coefs, index * COEFS);
+					}
+				}));
+			}
+
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Calibration fit failed", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+
+		return new CalibrationTable(intervalWidth, coefs, valid);
+	}
+
+	/**
+	 * Counting sort of sample indexes by interval
+	 *
+	 * @param intervalWidth
+	 * @param first
+	 *            it is filled with the position of the first sample of each
+	 *            interval; the last item is the number of samples
+	 * @return sample indexes
+	 */
+	private int[] sortByInterval(long intervalWidth, int[] first) {
+		int intervals = first.length - 1;
+		int[] order = new int[size];
+
+		for (int i = 0; i < size; i++) {
+			first[(int) (freq[i] / intervalWidth) + 1]++;
+		}
+		for (int i = 0; i < intervals; i++) {
+			first[i + 1] += first[i];
+		}
+
+		int[] next = Arrays.copyOf(first, intervals);
+
+		for (int i = 0; i < size; i++) {
+			order[next[(int) (freq[i] / intervalWidth)]++] = i;
+		}
+		return order;
+	}
+
+	/**
+	 * Least squares fit of one interval (normal equations)
+	 *
+	 * @param order
+	 *            sample indexes sorted by interval
+	 * @param from
+	 *            the first sample of the interval in order
+	 * @param to
+	 *            behind the last sample
+	 * @param out
+	 *            coefficients coef3, coef2, coef1, con
+	 * @param offset
+	 *            position in out
+	 * @return true if the polynomial was fitted
+	 */
+	private boolean fitInterval(int[] order, int from, int to, double[] out, int offset) {
+		/* sums of x^0..x^6 and y*x^0..y*x^3 */
+		double[] sumX = new double[2 * ORDER + 1];
+		double[] sumXY = new double[COEFS];
+		double[] distinct = new double[COEFS];
+		int distinctCount = 0;
+
+		for (int i = from; i < to; i++) {
+			double x = raw[order[i]];
+			double y = expected[order[i]];
+			double power = 1;
+
+			if (distinctCount < COEFS && !contains(distinct, distinctCount, x)) {
+				distinct[distinctCount++] = x;
+			}
+
+			for (int p = 0; p <= 2 * ORDER; p++) {
+				sumX[p] += power;
+				if (p < COEFS) {
+					sumXY[p] += y * power;
+				}
+				power *= x;
+			}
+		}
+
+		if (distinctCount < COEFS) {
+			return false;
+		}
+
+		/* matrix[r][c] = sum x^(r+c), the solution is con, coef1, coef2, coef3 */
+		double[][] matrix = new double[COEFS][COEFS + 1];
+
+		for (int r = 0; r < COEFS; r++) {
+			for (int c = 0; c < COEFS; c++) {
+				matrix[r][c] = sumX[r + c];
+			}
+			matrix[r][COEFS] = sumXY[r];
+		}
+
+		double[] solution = solve(matrix);
+
+		if (solution == null) {
+			return false;
+		}
+
+		for (int p = 0; p < COEFS; p++) {
+			out[offset + ORDER - p] = solution[p];
+		}
+		return true;
+	}
+
+	private static boolean contains(double[] values, int count, double value) {
+		for (int i = 0; i < count; i++) {
+			if (values[i] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gaussian elimination with partial pivoting
+	 *
+	 * @param matrix
+	 *            augmented matrix; it is changed
+	 * @return solution or null if the matrix is singular
+	 */
+	private static double[] solve(double[][] matrix) {
+		int n = matrix.length;
+
+		for (int col = 0; col < n; col++) {
+			int pivot = col;
+
+			for (int r = col + 1; r < n; r++) {
+				if (Math.abs(matrix[r][col]) > Math.abs(matrix[pivot][col])) {
+					pivot = r;
+				}
+			}
+
+			if (Math.abs(matrix[pivot][col]) < 1e-12) {
+				return null;
+			}
+
+			double[] tmp = matrix[col];
+			matrix[col] = matrix[pivot];
+			matrix[pivot] = tmp;
+
+			for (int r = col + 1; r < n; r++) {
+				double factor = matrix[r][col] / matrix[col][col];
+
+				for (int c = col; c <= n; c++) {
+					matrix[r][c] -= factor * matrix[col][c];
+				}
+			}
+		}
+
+		double[] solution = new double[n];
+
+		for (int r = n - 1; r >= 0; r--) {
+			double value = matrix[r][n];
+
+			for (int c = r + 1; c < n; c++) {
+				value -= matrix[r][c] * solution[c];
+			}
+			solution[r] = value / matrix[r][r];
+		}
+		return solution;
+	}
+}
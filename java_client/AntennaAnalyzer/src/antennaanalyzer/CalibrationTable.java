@@ -0,0 +1,234 @@
+/*
+ * CalibrationTable
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * SWR calibration table
+ *
+ * The frequency range is split to intervals of the same width. Each interval
+ * has its own polynomial (the same as calib_coefs in Arduino):
+ *
+ * SWR = coef3 * RAW_SWR^3 + coef2 * RAW_SWR^2 + coef1 * RAW_SWR + con
+ *
+ * Intervals without coefficients are not corrected. The table is immutable,
+ * it can be shared by all threads, and correct() does not create any object.
+ *
+ * File format (text): the first line "interval_hz,<width>", then one line
+ * per interval "<index>,<coef3>,<coef2>,<coef1>,<con>"; missing intervals are
+ * not corrected.
+ */
+public class CalibrationTable {
+
+	private static final String HEADER = "interval_hz";
+
+	/* the same limits as measure_swr() in Arduino */
+	private static final float MIN_RAW_SWR = 1.01f;
+	private static final float MAX_SWR = 28.999f;
+
+	private final long intervalWidth;
+
+	/* 4 coefficients per interval: coef3, coef2, coef1, con */
+	private final double[] coefs;
+	private final boolean[] valid;
+
+	/**
+	 * Creates table
+	 *
+	 * @param intervalWidth
+	 *            in Hz
+	 * @param coefs
+	 *            coef3, coef2, coef1, con of each interval
+	 * @param valid
+	 *            true for intervals which are corrected
+	 */
+	public CalibrationTable(long intervalWidth, double[] coefs, boolean[] valid) {
+		if (intervalWidth < 1 || coefs.length != valid.length * 4) {
+			throw new IllegalArgumentException("Invalid calibration table");
+		}
+		this.intervalWidth = intervalWidth;
+		this.coefs = coefs.clone();
+		this.valid = valid.clone();
+	}
+
+	public long getIntervalWidth() {
+		return intervalWidth;
+	}
+
+	public int getIntervalCount() {
+		return valid.length;
+	}
+
+	public boolean isValid(int interval) {
+		return valid[interval];
+	}
+
+	/**
+	 * @param interval
+	 * @param power
+	 *            0 for con .. 3 for coef3
+	 * @return coefficient
+	 */
+	public double getCoef(int interval, int power) {
+		return coefs[interval * 4 + 3 - power];
+	}
+
+	/**
+	 * Computes calibrated SWR
+	 *
+	 * @param freq
+	 *            in Hz
+	 * @param rawSWR
+	 * @return calibrated SWR; raw SWR when the interval has no coefficients
+	 */
+	public float correct(long freq, float rawSWR) {
+		if (rawSWR < MIN_RAW_SWR) {
+			return 1.0f;
+		}
+
+		long interval = freq / intervalWidth;
+
+		if (interval < 0 || interval >= valid.length || !valid[(int) interval]) {
+			return rawSWR;
+		}
+
+		int base = (int) interval * 4;
+		double x = rawSWR;
+		double swr = ((coefs[base] * x + coefs[base + 1]) * x + coefs[base + 2]) * x + coefs[base + 3];
+
+		if (swr >= MAX_SWR) {
+			return MAX_SWR;
+		}
+		if (swr < 1) {
+			return 1.0f;
+		}
+		return (float) swr;
+	}
+
+	/**
+	 * It saves the table to text file
+	 *
+	 * @param filename
+	 * @throws IOException
+	 */
+	public void save(String filename) throws IOException {
+		Writer out = new BufferedWriter(new FileWriter(filename));
+
+		try {
+			out.write(HEADER + "," + intervalWidth + "\n");
+			for (int i = 0; i < valid.length; i++) {
+				if (valid[i]) {
+					out.write(String.format(Locale.ROOT, "%d,%.9g,%.9g,%.9g,%.9g\n", i, coefs[i * 4],
+							coefs[i * 4 + 1], coefs[i * 4 + 2], coefs[i * 4 + 3]));
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * It loads the table from text file
+	 *
+	 * @param filename
+	 * @return loaded table
+	 * @throws IOException
+	 *             file cannot be read or it is not a calibration table
+	 */
+	public static CalibrationTable load(String filename) throws IOException {
+		BufferedReader in = new BufferedReader(new FileReader(filename));
+
+		try {
+			String line = in.readLine();
+			String[] header = (line == null) ? new String[0] : line.split(",");
+
+			if (header.length != 2 || !header[0].equals(HEADER)) {
+				throw new IOException("Not a calibration table: " + filename);
+			}
+
+			long width = Long.parseLong(header[1].trim());
+			double[] coefs = new double[0];
+			boolean[] valid = new boolean[0];
+
+			while ((line = in.readLine()) != null) {
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+
+				String[] items = line.split(",");
+
+				if (items.length != 5) {
+					throw new IOException("Unexpected calibration line: " + line);
+				}
+
+				int interval = Integer.parseInt(items[0].trim());
+
+				if (interval >= valid.length) {
+					valid = Arrays.copyOf(valid, interval + 1);
+					coefs = Arrays.copyOf(coefs, (interval + 1) * 4);
+				}
+
+				valid[interval] = true;
+				for (int i = 0; i < 4; i++) {
+					coefs[interval * 4 + i] = Double.parseDouble(items[i + 1].trim());
+				}
+			}
+
+			return new CalibrationTable(width, coefs, valid);
+		} catch (NumberFormatException | IndexOutOfBoundsException e) {
+			throw new IOException("Invalid calibration table " + filename + ": " + e.getMessage(), e);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns the table as Arduino calib_coefs initialization (only for 1 MHz
+	 * intervals, the firmware does not support other widths)
+	 *
+	 * @return C source
+	 */
+	public String toFirmwareSource() {
+		StringBuilder out = new StringBuilder();
+
+		for (int i = 0; i < valid.length; i++) {
+			if (valid[i]) {
+				out.append(String.format(Locale.ROOT,
+						"{ .do_correction = 1, .coef3 = %f, .coef2 = %f, .coef1 = %f, .con = %f},\n", coefs[i * 4],
+						coefs[i * 4 + 1], coefs[i * 4 + 2], coefs[i * 4 + 3]));
+			} else {
+				out.append("{ .do_correction = 0, .coef3 = 0, .coef2 = 0, .coef1 = 0, .con = 0},\n");
+			}
+		}
+		return out.toString();
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * DeviceSweepListener
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+/**
+ * Receives finished sweeps from MultiDeviceSweeper
+ */
+public interface DeviceSweepListener {
+
+	/**
+	 * It is called from the device thread after each finished sweep. Sweep
+	 * data are reused by next sweep of the same device.
+	 * 
+	 * @param port
+	 *            device port
+	 * @param sweepNumber
+	 *            1 for the first sweep
+	 * @param data
+	 *            sweep result
+	 */
+	void sweepFinished(String port, int sweepNumber, SweepData data);
+}
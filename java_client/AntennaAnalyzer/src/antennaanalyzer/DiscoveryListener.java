@@ -0,0 +1,44 @@
+/*
+ * DiscoveryListener
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Receives port list changes from AnalyzerDiscovery
+ */
+public interface DiscoveryListener {
+
+	/**
+	 * It is called from the discovery thread when a port appeared or
+	 * disappeared or when an analyzer was found
+	 * 
+	 * @param ports
+	 *            all serial ports
+	 * @param analyzers
+	 *            version lines of analyzers by port
+	 */
+	void portsChanged(List<String> ports, Map<String, String> analyzers);
+}
@@ -21,6 +21,8 @@
  * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
  */
 
+package antennaanalyzer;
+
 public class FreqRange {
 	private String band;
 	private int freq_low; // in kHz
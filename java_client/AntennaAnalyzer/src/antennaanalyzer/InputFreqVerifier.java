@@ -1,3 +1,5 @@
+package antennaanalyzer;
+
 import javax.swing.InputVerifier;
 import javax.swing.JComponent;
 import javax.swing.JOptionPane;
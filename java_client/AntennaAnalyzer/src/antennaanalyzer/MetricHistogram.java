@@ -0,0 +1,223 @@
+/*
+ * MetricHistogram
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative long values (e.g. nanoseconds, points per second)
+ *
+ * Values are counted in log-linear buckets: each power of 2 is split to 8
+ * buckets, therefore percentiles are accurate to 12.5 % and the histogram
+ * has a fixed size for the whole long range. Recording is lock-free and does
+ * not allocate, so it can be called for each sweep point from any thread.
+ */
+public class MetricHistogram {
+
+	/* 2^SUB_BUCKET_BITS buckets per power of 2 */
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) << SUB_BUCKET_BITS;
+
+	/**
+	 * Values of the histogram at one moment
+	 */
+	public static class Snapshot {
+		private final long count;
+		private final double mean;
+		private final long p50;
+		private final long p90;
+		private final long p99;
+		private final long max;
+
+		@ConstructorProperties({ "count", "mean", "p50", "p90", "p99", "max" })
+		public Snapshot(long count, double mean, long p50, long p90, long p99, long max) {
+			this.count = count;
+			this.mean = mean;
+			this.p50 = p50;
+			this.p90 = p90;
+			this.p99 = p99;
+			this.max = max;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return mean or NaN if no value was recorded
+		 */
+		public double getMean() {
+			return mean;
+		}
+
+		public long getP50() {
+			return p50;
+		}
+
+		public long getP90() {
+			return p90;
+		}
+
+		public long getP99() {
+			return p99;
+		}
+
+		public long getMax() {
+			return max;
+		}
+	}
+
+	private final String name;
+	private final String unit;
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param in_name
+	 *            shown in the stats panel
+	 * @param in_unit
+	 *            unit of recorded values, e.g. "ns", "points/s"
+	 */
+	public MetricHistogram(String in_name, String in_unit) {
+		name = in_name;
+		unit = in_unit;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getUnit() {
+		return unit;
+	}
+
+	/**
+	 * It adds a value; negative values are counted as 0
+	 *
+	 * @param value
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+
+		buckets.incrementAndGet(bucketIndex(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+
+		long currMax = max.get();
+		while (value > currMax && !max.compareAndSet(currMax, value)) {
+			currMax = max.get();
+		}
+	}
+
+	/**
+	 * It removes all values
+	 *
+	 * Values recorded during the reset can be partly lost.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return current values; percentiles are upper bounds of their buckets
+	 */
+	public Snapshot getSnapshot() {
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+
+		long currMax = max.get();
+		double mean = (total > 0) ? (double) sum.get() / total : Double.NaN;
+
+		return new Snapshot(total, mean, percentile(counts, total, 0.5, currMax),
+				percentile(counts, total, 0.9, currMax), percentile(counts, total, 0.99, currMax), currMax);
+	}
+
+	private static long percentile(long[] counts, long total, double fraction, long currMax) {
+		long rank = (long) Math.ceil(total * fraction);
+		long seen = 0;
+
+		for (int i = 0; i < BUCKETS && total > 0; i++) {
+			seen += counts[i];
+
+			if (seen >= rank) {
+				return Math.min(bucketUpperBound(i), currMax);
+			}
+		}
+		return 0;
+	}
+
+	/*
+	 * Values 0..7 have own buckets; a bigger value with the highest bit e goes
+	 * to bucket ((e - 2) << 3) + next 3 bits.
+	 */
+	private static int bucketIndex(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+		return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+	}
+
+	private static long bucketLowerBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+
+		int exponent = (index >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+		long subBucket = index & (SUB_BUCKETS - 1);
+
+		return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+	}
+
+	private static long bucketUpperBound(int index) {
+		long next = bucketLowerBound(index + 1);
+
+		/* the last bucket ends at Long.MAX_VALUE */
+		return (next > 0) ? next - 1 : Long.MAX_VALUE;
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * MetricsView
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Shows Analyzer Metrics in a Table
+ *
+ * Each row is one histogram; the values are taken over once per second.
+ * Times are shown in ms.
+ */
+public class MetricsView extends AbstractTableModel {
+
+	private static final long serialVersionUID = 1L;
+
+	/* table updates per second */
+	private static final int REFRESH_RATE = 1;
+
+	private static final String[] COLUMNS = { "Metric", "Unit", "Count", "Mean", "P50", "P99", "Max" };
+
+	private final MetricHistogram[] histograms;
+	private final MetricHistogram.Snapshot[] snapshots;
+
+	/**
+	 * It takes the histograms of metrics and starts periodic updates
+	 * 
+	 * @param in_metrics
+	 */
+	public MetricsView(AnalyzerMetrics in_metrics) {
+		histograms = in_metrics.getHistograms();
+		snapshots = new MetricHistogram.Snapshot[histograms.length];
+		refresh();
+
+		Timer refreshTimer = new Timer(1000 / REFRESH_RATE, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				refresh();
+			}
+		});
+		refreshTimer.start();
+	}
+
+	/**
+	 * It takes over current values
+	 * 
+	 * It is called from Event Dispatch Thread
+	 */
+	public void refresh() {
+		for (int i = 0; i < histograms.length; i++) {
+			snapshots[i] = histograms[i].getSnapshot();
+		}
+		fireTableRowsUpdated(0, histograms.length - 1);
+	}
+
+	@Override
+	public int getRowCount() {
+		return histograms.length;
+	}
+
+	@Override
+	public int getColumnCount() {
+		return COLUMNS.length;
+	}
+
+	@Override
+	public String getColumnName(int column) {
+		return COLUMNS[column];
+	}
+
+	@Override
+	public Object getValueAt(int row, int column) {
+		MetricHistogram histogram = histograms[row];
+		MetricHistogram.Snapshot snapshot = snapshots[row];
+		boolean time = histogram.getUnit().equals("ns");
+
+		switch (column) {
+		case 0:
+			return histogram.getName();
+		case 1:
+			return time ? "ms" : histogram.getUnit();
+		case 2:
+			return snapshot.getCount();
+		case 3:
+			return format(snapshot.getCount() > 0 ? snapshot.getMean() : 0, time);
+		case 4:
+			return format(snapshot.getP50(), time);
+		case 5:
+			return format(snapshot.getP99(), time);
+		default:
+			return format(snapshot.getMax(), time);
+		}
+	}
+
+	private static String format(double value, boolean time) {
+		return time ? String.format("%.3f", value / 1000000) : String.format("%.0f", value);
+	}
+}
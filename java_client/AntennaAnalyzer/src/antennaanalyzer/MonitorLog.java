@@ -0,0 +1,114 @@
+/*
+ * MonitorLog
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+/**
+ * Log of Arduino communication
+ *
+ * The log keeps only last N lines in a ring buffer. Lines can be added from
+ * any thread; a view reads them by their sequence numbers.
+ */
+public class MonitorLog {
+
+	private final String[] ring;
+	private long sequence = 0; // number of all added lines
+	private volatile boolean sweepPointsEnabled = true;
+
+	/**
+	 * Creates a log
+	 * 
+	 * @param capacity
+	 *            max number of kept lines
+	 */
+	public MonitorLog(int capacity) {
+		ring = new String[capacity];
+	}
+
+	public int getCapacity() {
+		return ring.length;
+	}
+
+	/**
+	 * It enables or disables logging of sweep points. Commands and their
+	 * results are logged always.
+	 * 
+	 * @param enabled
+	 */
+	public void setSweepPointsEnabled(boolean enabled) {
+		sweepPointsEnabled = enabled;
+	}
+
+	public boolean isSweepPointsEnabled() {
+		return sweepPointsEnabled;
+	}
+
+	/**
+	 * It adds one line to the log
+	 * 
+	 * @param line
+	 */
+	public synchronized void add(String line) {
+		ring[(int) (sequence % ring.length)] = line;
+		sequence++;
+	}
+
+	/**
+	 * Returns sequence number of next added line
+	 * 
+	 * @return number of all lines added so far
+	 */
+	public synchronized long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Removes all lines
+	 */
+	public synchronized void clear() {
+		for (int i = 0; i < ring.length; i++) {
+			ring[i] = null;
+		}
+		sequence = 0;
+	}
+
+	/**
+	 * It appends lines to the buffer. Each line is terminated by new line.
+	 * 
+	 * @param from
+	 *            sequence number of the first requested line; lines which are
+	 *            not kept anymore are skipped
+	 * @param out
+	 *            output buffer
+	 * @return sequence number after the last appended line
+	 */
+	public synchronized long appendLines(long from, StringBuilder out) {
+		long oldest = Math.max(sequence - ring.length, 0);
+
+		for (long i = Math.max(from, oldest); i < sequence; i++) {
+			out.append(ring[(int) (i % ring.length)]).append('\n');
+		}
+
+		return sequence;
+	}
+}
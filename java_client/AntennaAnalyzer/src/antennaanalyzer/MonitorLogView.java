@@ -0,0 +1,117 @@
+/*
+ * MonitorLogView
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+
+/**
+ * Shows Monitor Log in a Text Area
+ *
+ * New lines are taken over in batches at most REFRESH_RATE times per second
+ * and the text area never holds more lines than the log capacity.
+ */
+public class MonitorLogView {
+
+	/* max number of text area updates per second */
+	private static final int REFRESH_RATE = 10;
+
+	private final MonitorLog log;
+	private final JTextArea textArea;
+	private final StringBuilder batch = new StringBuilder();
+	private long shownSequence = 0;
+
+	/**
+	 * It binds the log with the text area and starts periodic updates
+	 * 
+	 * @param in_log
+	 * @param in_textArea
+	 */
+	public MonitorLogView(MonitorLog in_log, JTextArea in_textArea) {
+		log = in_log;
+		textArea = in_textArea;
+
+		Timer refreshTimer = new Timer(1000 / REFRESH_RATE, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				refresh();
+			}
+		});
+		refreshTimer.start();
+	}
+
+	/**
+	 * It shows new lines from the log
+	 * 
+	 * It is called from Event Dispatch Thread
+	 */
+	private void refresh() {
+		long sequence = log.getSequence();
+
+		if (sequence == shownSequence) {
+			return;
+		}
+
+		batch.setLength(0);
+
+		if (sequence < shownSequence || sequence - shownSequence >= log.getCapacity()) {
+			/* log was cleaned or all shown lines were overwritten */
+			shownSequence = log.appendLines(0, batch);
+			textArea.setText(batch.toString());
+		} else {
+			shownSequence = log.appendLines(shownSequence, batch);
+			textArea.append(batch.toString());
+			trimLines();
+		}
+
+		textArea.setCaretPosition(textArea.getDocument().getLength());
+	}
+
+	/**
+	 * Removes the oldest lines above the log capacity
+	 */
+	private void trimLines() {
+		Element root = textArea.getDocument().getDefaultRootElement();
+
+		/* the last element is the empty line after the last new line */
+		int extraLines = root.getElementCount() - 1 - log.getCapacity();
+
+		if (extraLines <= 0) {
+			return;
+		}
+
+		try {
+			int end = root.getElement(extraLines - 1).getEndOffset();
+			textArea.getDocument().remove(0, end);
+		} catch (BadLocationException e) {
+			textArea.setText("");
+			shownSequence = 0;
+		}
+	}
+}
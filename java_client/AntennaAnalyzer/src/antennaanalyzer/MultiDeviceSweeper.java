@@ -0,0 +1,332 @@
+/*
+ * MultiDeviceSweeper
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.management.JMException;
+
+/**
+ * Sweeps several analyzers in parallel
+ *
+ * Each device has its own thread, connection, parser and sweep data, so
+ * devices do not share any lock while they read points. Threads meet only
+ * when a finished sweep is reported to the listener.
+ */
+public class MultiDeviceSweeper {
+
+	private static final int READY_TIMEOUT_MS = 5000;
+	private static final int POINT_TIMEOUT_MS = 5000;
+
+	/**
+	 * Result of sweeping of one device
+	 */
+	public static class DeviceResult {
+		private final String port;
+		private final MonitorLog log = new MonitorLog(100);
+		private SweepData lastSweep;
+		private int sweeps = 0;
+		private long points = 0;
+		private long elapsedMs = 0;
+		private Exception error = null;
+		private AnalyzerMetrics metrics;
+
+		private DeviceResult(String in_port) {
+			port = in_port;
+		}
+
+		public String getPort() {
+			return port;
+		}
+
+		/**
+		 * @return log of the last commands and results of the device
+		 */
+		public MonitorLog getLog() {
+			return log;
+		}
+
+		/**
+		 * @return the last finished sweep or null
+		 */
+		public SweepData getLastSweep() {
+			return lastSweep;
+		}
+
+		public int getSweeps() {
+			return sweeps;
+		}
+
+		public long getPoints() {
+			return points;
+		}
+
+		public long getElapsedMs() {
+			return elapsedMs;
+		}
+
+		/**
+		 * @return metrics of the device connection
+		 */
+		public AnalyzerMetrics getMetrics() {
+			return metrics;
+		}
+
+		/**
+		 * @return null if all sweeps finished successfully
+		 */
+		public Exception getError() {
+			return error;
+		}
+	}
+
+	private final List<String> ports;
+	private final int baudRate;
+	private int zoomSteps = 0;
+	private CalibrationTable calibration = null;
+	private boolean binaryProtocol = false;
+	private boolean keepRunning = false;
+	private SweepProfile profile = SweepProfile.NORMAL;
+	private int maxBaudRate;
+
+	/**
+	 * Prepares sweeping of devices
+	 * 
+	 * @param in_ports
+	 *            serial ports of devices; each port can be given only once,
+	 *            two connections of one device would disturb each other
+	 * @param in_baudRate
+	 * @throws IllegalArgumentException
+	 *             a port is given more than once
+	 */
+	public MultiDeviceSweeper(List<String> in_ports, int in_baudRate) {
+		Set<String> unique = new HashSet<String>();
+
+		for (String port : in_ports) {
+			if (!unique.add(port)) {
+				throw new IllegalArgumentException("Port " + port + " is given more than once");
+			}
+		}
+
+		ports = new ArrayList<String>(in_ports);
+		baudRate = in_baudRate;
+		maxBaudRate = in_baudRate;
+	}
+
+	/**
+	 * It enables the two-stage sweep (see AdaptiveSweep)
+	 * 
+	 * @param steps
+	 *            steps around the SWR minimum; 0 disables the zoom
+	 */
+	public void setZoomSteps(int steps) {
+		zoomSteps = steps;
+	}
+
+	/**
+	 * It sets SWR calibration of all devices
+	 * 
+	 * @param table
+	 *            null means SWR computed by Arduino
+	 */
+	public void setCalibration(CalibrationTable table) {
+		calibration = table;
+	}
+
+	/**
+	 * It selects the sweep protocol of all devices
+	 * 
+	 * @param enabled
+	 *            true - binary frames, false - text lines
+	 */
+	public void setBinaryProtocol(boolean enabled) {
+		binaryProtocol = enabled;
+	}
+
+	/**
+	 * It keeps analyzers running after close (see
+	 * ArduinoAnalyzerCom.setKeepRunning); it changes tty settings of the
+	 * ports
+	 * 
+	 * @param enabled
+	 */
+	public void setKeepRunning(boolean enabled) {
+		keepRunning = enabled;
+	}
+
+	/**
+	 * It sets the sweep profile of all devices
+	 * 
+	 * @param in_profile
+	 */
+	public void setSweepProfile(SweepProfile in_profile) {
+		profile = in_profile;
+	}
+
+	/**
+	 * It enables baud rate negotiation of all devices
+	 * 
+	 * @param rate
+	 *            the highest negotiated rate; the initial rate disables the
+	 *            negotiation
+	 */
+	public void setMaxBaudRate(int rate) {
+		maxBaudRate = rate;
+	}
+
+	/**
+	 * It runs sweeps on all devices in parallel and waits until all devices
+	 * finish. A failure of one device does not stop the others.
+	 * 
+	 * @param startFreq
+	 *            in Hz
+	 * @param stopFreq
+	 *            in Hz
+	 * @param steps
+	 * @param repeat
+	 *            number of sweeps per device
+	 * @param listener
+	 *            can be null
+	 * @return results by port, in the order of ports
+	 * @throws InterruptedException
+	 */
+	public Map<String, DeviceResult> run(final long startFreq, final long stopFreq, final int steps,
+			final int repeat, final DeviceSweepListener listener) throws InterruptedException {
+
+		Map<String, DeviceResult> results = new LinkedHashMap<String, DeviceResult>();
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+
+		/* one thread per device - devices spend most of time waiting for data */
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(ports.size(), 1), new ThreadFactory() {
+			private int counter = 0;
+
+			@Override
+			public synchronized Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Device sweeper " + (++counter));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		try {
+			for (String port : ports) {
+				final DeviceResult result = new DeviceResult(port);
+				results.put(port, result);
+
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						sweepDevice(result, startFreq, stopFreq, steps, repeat, listener);
+					}
+				}));
+			}
+
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					// errors are stored in device results
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		return Collections.unmodifiableMap(results);
+	}
+
+	/**
+	 * Sweeps one device; it runs in the device thread
+	 */
+	private void sweepDevice(DeviceResult result, long startFreq, long stopFreq, int steps, int repeat,
+			DeviceSweepListener listener) {
+		ArduinoAnalyzerCom arduino = new ArduinoAnalyzerCom(baudRate, result.log);
+		AdaptiveSweep adaptive = new AdaptiveSweep();
+
+		result.metrics = arduino.getMetrics();
+
+		arduino.setCalibration(calibration);
+		arduino.setBinaryProtocol(binaryProtocol);
+		arduino.setKeepRunning(keepRunning);
+		arduino.setSweepProfile(profile);
+		SweepData data = new SweepData(steps + zoomSteps + 2);
+		long start = System.currentTimeMillis();
+
+		result.log.setSweepPointsEnabled(false);
+
+		if (!arduino.openPort(result.port)) {
+			result.error = new IOException("Cannot open port " + result.port);
+			return;
+		}
+
+		/* metrics can be watched by JMX while the device is swept */
+		try {
+			result.metrics.register(result.port);
+		} catch (JMException e) {
+			result.log.add("JMX: " + e.getMessage());
+		}
+
+		try {
+			arduino.waitForReady(READY_TIMEOUT_MS);
+
+			if (maxBaudRate > baudRate) {
+				arduino.negotiateBaudRate(maxBaudRate);
+			}
+
+			for (int i = 1; i <= repeat && !Thread.currentThread().isInterrupted(); i++) {
+				if (zoomSteps > 0) {
+					adaptive.performSweep(arduino, startFreq, stopFreq, steps, zoomSteps, POINT_TIMEOUT_MS, data, null);
+				} else {
+					arduino.performSweep(startFreq, stopFreq, steps, POINT_TIMEOUT_MS, data, null);
+				}
+
+				result.sweeps = i;
+				result.points += data.size();
+				result.lastSweep = data;
+
+				if (listener != null) {
+					listener.sweepFinished(result.port, i, data);
+				}
+			}
+		} catch (Exception e) {
+			result.error = e;
+		} finally {
+			arduino.closePort();
+			result.metrics.unregister();
+			result.elapsedMs = System.currentTimeMillis() - start;
+		}
+	}
+}
@@ -0,0 +1,311 @@
+/*
+ * SWRDataset
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.util.Arrays;
+
+import org.jfree.data.DomainInfo;
+import org.jfree.data.DomainOrder;
+import org.jfree.data.Range;
+import org.jfree.data.xy.AbstractXYDataset;
+
+/**
+ * XY Dataset for SWR graph
+ *
+ * Each serie is stored in two growable double arrays (frequency, SWR). Points
+ * come from a sweep, therefore they are already sorted by frequency and they
+ * are appended - no sorting, no duplicity check and no object per point.
+ * Points of a repeated sweep can replace the previous points in place.
+ *
+ * The dataset is not thread-safe, it has to be changed only in Event Dispatch
+ * Thread.
+ */
+public class SWRDataset extends AbstractXYDataset implements DomainInfo {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	private String[] keys;
+	private double[][] freq;
+	private double[][] swr;
+	private int[] size;
+
+	/**
+	 * Creates dataset with empty series
+	 *
+	 * @param seriesKeys
+	 *            serie names
+	 */
+	public SWRDataset(String... seriesKeys) {
+		keys = seriesKeys.clone();
+		freq = new double[keys.length][INITIAL_CAPACITY];
+		swr = new double[keys.length][INITIAL_CAPACITY];
+		size = new int[keys.length];
+	}
+
+	/**
+	 * It adds a new empty serie behind existing series
+	 *
+	 * @param key
+	 *            serie name
+	 * @return index of the new serie
+	 */
+	public int addSeries(String key) {
+		int index = keys.length;
+
+		keys = Arrays.copyOf(keys, index + 1);
+		freq = Arrays.copyOf(freq, index + 1);
+		swr = Arrays.copyOf(swr, index + 1);
+		size = Arrays.copyOf(size, index + 1);
+
+		keys[index] = key;
+		freq[index] = new double[INITIAL_CAPACITY];
+		swr[index] = new double[INITIAL_CAPACITY];
+		fireDatasetChanged();
+
+		return index;
+	}
+
+	/**
+	 * It removes the serie; following series move one index down
+	 *
+	 * @param series
+	 *            serie index
+	 */
+	public void removeSeries(int series) {
+		int count = keys.length - 1;
+
+		System.arraycopy(keys, series + 1, keys, series, count - series);
+		System.arraycopy(freq, series + 1, freq, series, count - series);
+		System.arraycopy(swr, series + 1, swr, series, count - series);
+		System.arraycopy(size, series + 1, size, series, count - series);
+
+		keys = Arrays.copyOf(keys, count);
+		freq = Arrays.copyOf(freq, count);
+		swr = Arrays.copyOf(swr, count);
+		size = Arrays.copyOf(size, count);
+		fireDatasetChanged();
+	}
+
+	/**
+	 * It appends a point to the end of serie
+	 *
+	 * The frequency must not be lower than the last frequency of the serie.
+	 *
+	 * @param series
+	 *            serie index
+	 * @param in_freq
+	 * @param in_swr
+	 */
+	public void append(int series, double in_freq, double in_swr) {
+		int index = size[series];
+
+		if (index == freq[series].length) {
+			freq[series] = Arrays.copyOf(freq[series], index * 2);
+			swr[series] = Arrays.copyOf(swr[series], index * 2);
+		}
+
+		freq[series][index] = in_freq;
+		swr[series][index] = in_swr;
+		size[series] = index + 1;
+		fireDatasetChanged();
+	}
+
+	/**
+	 * It sets SWR of the point with the same frequency or it adds a new point
+	 * 
+	 * Points of a repeated sweep replace the points of previous sweep in
+	 * place. Points behind the last point are appended in O(1).
+	 * 
+	 * @param series
+	 *            serie index
+	 * @param in_freq
+	 * @param in_swr
+	 */
+	public void put(int series, double in_freq, double in_swr) {
+		int count = size[series];
+
+		if (count == 0 || in_freq > freq[series][count - 1]) {
+			append(series, in_freq, in_swr);
+			return;
+		}
+
+		int index = indexOf(series, in_freq);
+
+		if (index >= 0) {
+			swr[series][index] = in_swr;
+			fireDatasetChanged();
+			return;
+		}
+
+		/* insert the point to keep frequency order */
+		index = -index - 1;
+
+		if (count == freq[series].length) {
+			freq[series] = Arrays.copyOf(freq[series], count * 2);
+			swr[series] = Arrays.copyOf(swr[series], count * 2);
+		}
+
+		System.arraycopy(freq[series], index, freq[series], index + 1, count - index);
+		System.arraycopy(swr[series], index, swr[series], index + 1, count - index);
+		freq[series][index] = in_freq;
+		swr[series][index] = in_swr;
+		size[series] = count + 1;
+		fireDatasetChanged();
+	}
+
+	/**
+	 * Removes all points of serie; allocated arrays are kept
+	 *
+	 * @param series
+	 *            serie index
+	 */
+	public void clear(int series) {
+		if (size[series] > 0) {
+			size[series] = 0;
+			fireDatasetChanged();
+		}
+	}
+
+	/**
+	 * Finds the point with the frequency
+	 *
+	 * @param series
+	 *            serie index
+	 * @param in_freq
+	 * @return the same as Arrays.binarySearch - index of the point or
+	 *         (-(insertion point) - 1)
+	 */
+	public int indexOf(int series, double in_freq) {
+		return Arrays.binarySearch(freq[series], 0, size[series], in_freq);
+	}
+
+	/**
+	 * Returns SWR for any frequency in the serie range
+	 * 
+	 * The point is found by binary search and SWR is interpolated between the
+	 * neighbouring points.
+	 * 
+	 * @param series
+	 *            serie index
+	 * @param in_freq
+	 * @return interpolated SWR or NaN if the frequency is outside of the serie
+	 */
+	public double interpolateSWR(int series, double in_freq) {
+		int count = size[series];
+
+		if (count == 0 || in_freq < freq[series][0] || in_freq > freq[series][count - 1]) {
+			return Double.NaN;
+		}
+
+		int index = indexOf(series, in_freq);
+
+		if (index >= 0) {
+			return swr[series][index];
+		}
+
+		/* in_freq is between points index - 1 and index */
+		index = -index - 1;
+
+		double f1 = freq[series][index - 1];
+		double f2 = freq[series][index];
+		double s1 = swr[series][index - 1];
+		double s2 = swr[series][index];
+
+		return s1 + (s2 - s1) * (in_freq - f1) / (f2 - f1);
+	}
+
+	@Override
+	public int getSeriesCount() {
+		return keys.length;
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	public Comparable getSeriesKey(int series) {
+		return keys[series];
+	}
+
+	@Override
+	public int getItemCount(int series) {
+		return size[series];
+	}
+
+	@Override
+	public DomainOrder getDomainOrder() {
+		return DomainOrder.ASCENDING;
+	}
+
+	@Override
+	public double getXValue(int series, int item) {
+		return freq[series][item];
+	}
+
+	@Override
+	public double getYValue(int series, int item) {
+		return swr[series][item];
+	}
+
+	@Override
+	public Number getX(int series, int item) {
+		return getXValue(series, item);
+	}
+
+	@Override
+	public Number getY(int series, int item) {
+		return getYValue(series, item);
+	}
+
+	@Override
+	public double getDomainLowerBound(boolean includeInterval) {
+		Range range = getDomainBounds(includeInterval);
+		return (range == null) ? Double.NaN : range.getLowerBound();
+	}
+
+	@Override
+	public double getDomainUpperBound(boolean includeInterval) {
+		Range range = getDomainBounds(includeInterval);
+		return (range == null) ? Double.NaN : range.getUpperBound();
+	}
+
+	@Override
+	public Range getDomainBounds(boolean includeInterval) {
+		double low = Double.POSITIVE_INFINITY;
+		double high = Double.NEGATIVE_INFINITY;
+
+		/* series are sorted, only the first and the last points are checked */
+		for (int series = 0; series < keys.length; series++) {
+			if (size[series] > 0) {
+				low = Math.min(low, freq[series][0]);
+				high = Math.max(high, freq[series][size[series] - 1]);
+			}
+		}
+
+		if (low > high) {
+			return null;
+		}
+		return new Range(low, high);
+	}
+}
@@ -0,0 +1,547 @@
+
+/*
+ * SWRGraph
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Paint;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartMouseEvent;
+import org.jfree.chart.ChartMouseListener;
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.panel.CrosshairOverlay;
+import org.jfree.chart.plot.Crosshair;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.ValueMarker;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.ui.Layer;
+import org.jfree.ui.RectangleAnchor;
+import org.jfree.ui.RectangleEdge;
+import org.jfree.ui.TextAnchor;
+
+public class SWRGraph implements ChartMouseListener {
+
+	public enum SERIE_TYPE {
+		PRIMARY, SECONDARY
+	};
+
+	/* how many times per second the graph takes over new points */
+	private static final int FRAME_RATE = 30;
+
+	/*
+	 * Points received from a sweep thread, they wait for next frame. The graph
+	 * itself is changed only in Event Dispatch Thread.
+	 */
+	private static class PendingPoints {
+		private float[] freq = new float[64];
+		private float[] swr = new float[64];
+		private int size = 0;
+		private boolean clear = false;
+		private boolean newSweep = false;
+
+		private void add(float in_freq, float in_swr) {
+			if (size == freq.length) {
+				freq = Arrays.copyOf(freq, size * 2);
+				swr = Arrays.copyOf(swr, size * 2);
+			}
+			freq[size] = in_freq;
+			swr[size] = in_swr;
+			size++;
+		}
+	}
+
+	private final Object pendingLock = new Object();
+	private PendingPoints[] pending = { new PendingPoints(), new PendingPoints() };
+	private PendingPoints[] publishing = { new PendingPoints(), new PendingPoints() };
+	private Timer publishTimer;
+
+	/* when the oldest pending point was added; 0 = no pending point */
+	private long pendingSince = 0;
+	private volatile AnalyzerMetrics metrics = null;
+
+	/* statistics and markers are shown only for primary serie */
+	private SweepStatistics statistics = new SweepStatistics();
+	private ValueMarker minSWRMarker;
+	private ValueMarker minFreqMarker;
+	private ValueMarker[] lowerEdgeMarkers;
+	private ValueMarker[] upperEdgeMarkers;
+
+	private SWRDataset dataset;
+	private JFreeChart chart;
+	private XYPlot plot;
+	private ValueAxis freq_range;
+	private NumberAxis swr_range;
+	private ChartPanel chartPanel;
+	private CrosshairOverlay crosshairOverlay;
+	private Crosshair xCrosshair;
+	private List<Crosshair> yCrosshairs = new ArrayList<Crosshair>();
+
+	/* ids of shown overlays; overlay series follow the SERIE_TYPE series */
+	private List<Integer> overlayIds = new ArrayList<Integer>();
+
+	/**
+	 * Creates Graph with X-axis range xmin..x_max and Y-axis range ymin..ymax
+	 * 
+	 * @param xmin
+	 * @param xmax
+	 * @param ymin
+	 * @param ymax
+	 */
+	public SWRGraph(int xmin, int xmax, int ymin, int ymax) {
+
+		dataset = new SWRDataset("VSWR", "VSWR 2nd");
+
+		chart = ChartFactory.createXYLineChart("VSWR", "Frequency [kHz]", "SWR", dataset, PlotOrientation.VERTICAL,
+				true, true, true);
+
+		plot = (XYPlot) chart.getPlot();
+
+		freq_range = plot.getDomainAxis();
+
+		freq_range.setRange(xmin, xmax);
+
+		swr_range = (NumberAxis) plot.getRangeAxis();
+		swr_range.setRange(ymin, ymax);
+
+		/* Creates Overlay */
+		chartPanel = new ChartPanel(getChart(), true, true, true, true, true);
+		crosshairOverlay = new CrosshairOverlay();
+		xCrosshair = new Crosshair(Double.NaN, Color.GRAY, new BasicStroke(0f));
+		xCrosshair.setLabelVisible(true);
+		crosshairOverlay.addDomainCrosshair(xCrosshair);
+
+		chartPanel.addOverlay(crosshairOverlay);
+
+		chartPanel.addChartMouseListener(this);
+
+		createMarkers();
+
+		publishTimer = new Timer(1000 / FRAME_RATE, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				publishPendingData();
+			}
+		});
+		publishTimer.start();
+	}
+
+	/**
+	 * It moves all pending points to graph. Each serie is changed as one
+	 * batch with one change notification.
+	 * 
+	 * It has to be called from Event Dispatch Thread
+	 */
+	private void publishPendingData() {
+		PendingPoints[] swap;
+		long since;
+
+		/* take pending points and leave empty buffers for sweep thread */
+		synchronized (pendingLock) {
+			swap = pending;
+			pending = publishing;
+			publishing = swap;
+			since = pendingSince;
+			pendingSince = 0;
+		}
+
+		boolean datasetChanged = false;
+		boolean newSweep = false;
+
+		for (PendingPoints points : publishing) {
+			datasetChanged |= points.clear || points.size > 0;
+			newSweep |= points.newSweep;
+		}
+
+		/* setNotify(true) redraws the chart, an idle frame must not do it */
+		if (!datasetChanged && !newSweep) {
+			return;
+		}
+
+		/* all series are changed with one notification */
+		if (datasetChanged) {
+			dataset.setNotify(false);
+		}
+
+		int primaryIndex = SERIETYPE2Index(SERIE_TYPE.PRIMARY);
+		boolean statisticsChanged = false;
+
+		for (int index = 0; index < publishing.length; index++) {
+			PendingPoints points = publishing[index];
+			boolean primary = (index == primaryIndex);
+
+			if (points.clear) {
+				dataset.clear(index);
+			}
+
+			if (primary && (points.clear || points.newSweep)) {
+				statistics.reset();
+				statisticsChanged = true;
+			}
+
+			/* points of a repeated sweep replace the previous ones in place */
+			for (int i = 0; i < points.size; i++) {
+				dataset.put(index, points.freq[i], points.swr[i]);
+
+				if (primary) {
+					statistics.add(points.freq[i], points.swr[i]);
+					statisticsChanged = true;
+				}
+			}
+
+			points.size = 0;
+			points.clear = false;
+			points.newSweep = false;
+		}
+
+		if (datasetChanged) {
+			dataset.setNotify(true);
+		}
+
+		if (statisticsChanged) {
+			updateMarkers();
+		}
+
+		AnalyzerMetrics currMetrics = metrics;
+
+		if (since != 0 && currMetrics != null) {
+			currMetrics.recordPublishLag(System.nanoTime() - since);
+		}
+	}
+
+	/**
+	 * Creates markers for minimum and band edges
+	 */
+	private void createMarkers() {
+		int count = statistics.getThresholdCount();
+
+		minSWRMarker = new ValueMarker(0);
+		minSWRMarker.setPaint(Color.orange);
+		minSWRMarker.setLabelTextAnchor(TextAnchor.CENTER_LEFT);
+
+		minFreqMarker = new ValueMarker(0);
+		minFreqMarker.setPaint(Color.orange);
+		minFreqMarker.setLabelTextAnchor(TextAnchor.CENTER_LEFT);
+
+		lowerEdgeMarkers = new ValueMarker[count];
+		upperEdgeMarkers = new ValueMarker[count];
+
+		for (int i = 0; i < count; i++) {
+			lowerEdgeMarkers[i] = new ValueMarker(0);
+			lowerEdgeMarkers[i].setPaint(Color.lightGray);
+			lowerEdgeMarkers[i].setLabelAnchor(RectangleAnchor.BOTTOM_LEFT);
+			lowerEdgeMarkers[i].setLabelTextAnchor(TextAnchor.BOTTOM_RIGHT);
+
+			upperEdgeMarkers[i] = new ValueMarker(0);
+			upperEdgeMarkers[i].setPaint(Color.lightGray);
+			upperEdgeMarkers[i].setLabelAnchor(RectangleAnchor.BOTTOM_RIGHT);
+			upperEdgeMarkers[i].setLabelTextAnchor(TextAnchor.BOTTOM_LEFT);
+		}
+	}
+
+	/**
+	 * Shows current statistics of primary serie
+	 * 
+	 * It has to be called from Event Dispatch Thread
+	 */
+	private void updateMarkers() {
+		plot.clearRangeMarkers();
+		plot.clearDomainMarkers();
+
+		if (Double.isNaN(statistics.getMinSWR())) {
+			return;
+		}
+
+		minSWRMarker.setValue(statistics.getMinSWR());
+		minSWRMarker.setLabel("Min SWR = " + (float) statistics.getMinSWR());
+		plot.addRangeMarker(minSWRMarker, Layer.BACKGROUND);
+
+		minFreqMarker.setValue(statistics.getMinFreq());
+		minFreqMarker.setLabel("Freq = " + (float) statistics.getMinFreq());
+		plot.addDomainMarker(minFreqMarker, Layer.BACKGROUND);
+
+		for (int i = 0; i < statistics.getThresholdCount(); i++) {
+			String name = statistics.getThreshold(i) + ":1";
+
+			if (!Double.isNaN(statistics.getLowerEdge(i))) {
+				lowerEdgeMarkers[i].setValue(statistics.getLowerEdge(i));
+				lowerEdgeMarkers[i].setLabel(name);
+				plot.addDomainMarker(lowerEdgeMarkers[i], Layer.BACKGROUND);
+			}
+
+			if (!Double.isNaN(statistics.getUpperEdge(i))) {
+				upperEdgeMarkers[i].setValue(statistics.getUpperEdge(i));
+
+				if (Double.isNaN(statistics.getBandwidth(i))) {
+					upperEdgeMarkers[i].setLabel(name);
+				} else {
+					upperEdgeMarkers[i].setLabel(String.format("%s BW = %.1f kHz, Q = %.1f", name,
+							statistics.getBandwidth(i), statistics.getQ(i)));
+				}
+				plot.addDomainMarker(upperEdgeMarkers[i], Layer.BACKGROUND);
+			}
+		}
+	}
+
+	private int SERIETYPE2Index(SERIE_TYPE type) {
+		if (type == SERIE_TYPE.PRIMARY) {
+			return 0;
+		}
+		return 1;
+	}
+
+	public ChartPanel getChartPanel() {
+		return chartPanel;
+	}
+
+	public JFreeChart getChart() {
+		return chart;
+	}
+
+	/**
+	 * It changes SWR (Y-axis) range
+	 * 
+	 * @param swrmin
+	 * @param swrmax
+	 */
+	public void changeSWRRange(int swrmin, int swrmax) {
+		swr_range.setRange(swrmin, swrmax);
+	}
+
+	/**
+	 * It change Frequency range (X=axis)
+	 * 
+	 * @param low
+	 * @param high
+	 */
+	public void changeFrequencyRange(int low, int high) {
+		cleanSWRData(SERIE_TYPE.PRIMARY);
+		cleanSWRData(SERIE_TYPE.SECONDARY);
+		freq_range.setRange(low, high);
+	}
+
+	/**
+	 * It adds SWR data to graph
+	 * 
+	 * It can be called from any thread, the point is shown in next frame
+	 * 
+	 * @param in_freq
+	 * @param in_swr
+	 */
+	public void addSWRData(SERIE_TYPE in_serie, float in_freq, float in_swr) {
+		synchronized (pendingLock) {
+			pending[SERIETYPE2Index(in_serie)].add(in_freq, in_swr);
+
+			if (pendingSince == 0) {
+				pendingSince = System.nanoTime();
+			}
+		}
+	}
+
+	/**
+	 * It sets metrics where the delay between adding of points and their
+	 * publishing in Event Dispatch Thread is recorded
+	 * 
+	 * @param in_metrics
+	 *            null disables the recording
+	 */
+	public void setMetrics(AnalyzerMetrics in_metrics) {
+		metrics = in_metrics;
+	}
+
+	/**
+	 * Graph Cleanup
+	 * 
+	 * It can be called from any thread, the serie is cleaned in next frame
+	 */
+	public void cleanSWRData(SERIE_TYPE in_serie) {
+		synchronized (pendingLock) {
+			PendingPoints points = pending[SERIETYPE2Index(in_serie)];
+			points.size = 0;
+			points.clear = true;
+		}
+	}
+
+	/**
+	 * It informs the graph that a new sweep of the serie starts. Points of
+	 * previous sweep stay in graph until they are replaced, statistics start
+	 * from scratch.
+	 * 
+	 * It can be called from any thread
+	 */
+	public void startSweep(SERIE_TYPE in_serie) {
+		synchronized (pendingLock) {
+			pending[SERIETYPE2Index(in_serie)].newSweep = true;
+		}
+	}
+
+	/**
+	 * Show SWR minimum on graph
+	 * 
+	 * Minimum and band markers are updated during the sweep; this only shows
+	 * the points which still wait for next frame.
+	 */
+	public void showMinimum(final SERIE_TYPE in_serie) {
+		if (!SwingUtilities.isEventDispatchThread()) {
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					showMinimum(in_serie);
+				}
+			});
+			return;
+		}
+
+		/* statistics are computed during the sweep, only last points are missing */
+		publishPendingData();
+	}
+
+	/**
+	 * It shows a retained sweep as an overlay serie
+	 * 
+	 * It has to be called from Event Dispatch Thread
+	 * 
+	 * @param id
+	 *            overlay id, e.g. SweepHistory id
+	 * @param label
+	 *            serie name in legend
+	 * @param data
+	 *            sweep; frequency in Hz
+	 */
+	public void showOverlay(int id, String label, SweepData data) {
+		if (overlayIds.contains(id)) {
+			return;
+		}
+
+		dataset.setNotify(false);
+
+		int series = dataset.addSeries(label);
+
+		for (int index = 0; index < data.size(); index++) {
+			dataset.append(series, data.getFreq(index) / 1000.0, data.getSWR(index));
+		}
+		overlayIds.add(id);
+
+		dataset.setNotify(true);
+	}
+
+	/**
+	 * It removes the overlay serie
+	 * 
+	 * It has to be called from Event Dispatch Thread
+	 * 
+	 * @param id
+	 *            overlay id
+	 */
+	public void hideOverlay(int id) {
+		int position = overlayIds.indexOf(id);
+
+		if (position < 0) {
+			return;
+		}
+
+		overlayIds.remove(position);
+		dataset.removeSeries(SERIE_TYPE.values().length + position);
+	}
+
+	/**
+	 * @return ids of shown overlays
+	 */
+	public List<Integer> getOverlayIds() {
+		return new ArrayList<Integer>(overlayIds);
+	}
+
+	@Override
+	public void chartMouseClicked(ChartMouseEvent arg0) {
+		// ignore it
+
+	}
+
+	/**
+	 * Returns SWR crosshair for serie; crosshairs are created on demand
+	 * 
+	 * @param series
+	 *            serie index
+	 * @return crosshair
+	 */
+	private Crosshair getSWRCrosshair(int series) {
+		while (yCrosshairs.size() <= series) {
+			Crosshair crosshair = new Crosshair(Double.NaN, Color.GRAY, new BasicStroke(0f));
+			crosshair.setLabelVisible(true);
+			crosshairOverlay.addRangeCrosshair(crosshair);
+			yCrosshairs.add(crosshair);
+		}
+
+		/* overlays can be removed, the serie colour can change */
+		Crosshair crosshair = yCrosshairs.get(series);
+		Paint paint = plot.getRenderer().getItemPaint(series, 0);
+
+		if (!paint.equals(crosshair.getPaint())) {
+			crosshair.setPaint(paint);
+			crosshair.setLabelPaint(paint);
+		}
+		return crosshair;
+	}
+
+	@Override
+	public void chartMouseMoved(ChartMouseEvent event) {
+		Rectangle2D dataArea = chartPanel.getScreenDataArea();
+		ValueAxis xAxis = plot.getDomainAxis();
+		double x = xAxis.java2DToValue(event.getTrigger().getX(), dataArea, RectangleEdge.BOTTOM);
+
+		xCrosshair.setValue(x);
+
+		/* SWR of every visible serie at cursor frequency (binary search) */
+		for (int series = 0; series < dataset.getSeriesCount(); series++) {
+			Crosshair crosshair = getSWRCrosshair(series);
+			double y = Double.NaN;
+
+			if (plot.getRenderer().isSeriesVisible(series)) {
+				y = dataset.interpolateSWR(series, x);
+			}
+
+			crosshair.setVisible(!Double.isNaN(y));
+			crosshair.setValue(y);
+		}
+
+		/* crosshairs of removed overlays */
+		for (int series = dataset.getSeriesCount(); series < yCrosshairs.size(); series++) {
+			yCrosshairs.get(series).setVisible(false);
+		}
+	}
+
+}
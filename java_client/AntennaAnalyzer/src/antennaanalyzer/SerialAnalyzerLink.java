@@ -0,0 +1,193 @@
+/*
+ * SerialAnalyzerLink
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import com.fazecast.jSerialComm.SerialPort;
+
+/**
+ * Analyzer connected to a serial port
+ *
+ * Arduino resets itself when DTR goes active. jSerialComm 2.x can keep DTR
+ * and RTS inactive already when the port is opened (the methods are called
+ * by reflection, jSerialComm 1.3 does not have them). On request, a port
+ * with an analyzer is switched to -hupcl on Linux and macOS (see
+ * keepAnalyzerRunning). The first open after the USB cable is plugged in
+ * still resets Arduino. ArduinoAnalyzerCom.waitForReady finds out whether
+ * Arduino was reset.
+ */
+public class SerialAnalyzerLink implements AnalyzerLink {
+
+	/* max wait time for stty */
+	private static final int STTY_TIMEOUT_MS = 1000;
+
+	private final SerialPort port;
+	private final String name;
+
+	/**
+	 * Prepares the link, the port is not opened yet
+	 * 
+	 * @param in_name
+	 *            serial port name
+	 * @param baudRate
+	 *            initial baud rate
+	 * @param readTimeout
+	 *            how long a read may block in ms
+	 */
+	public SerialAnalyzerLink(String in_name, int baudRate, int readTimeout) {
+		name = in_name;
+		port = SerialPort.getCommPort(in_name);
+		port.setComPortTimeouts(SerialPort.TIMEOUT_READ_SEMI_BLOCKING, readTimeout, 0);
+		port.setBaudRate(baudRate);
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public boolean open() {
+		invokeIfPresent("clearDTR");
+		invokeIfPresent("clearRTS");
+
+		return openWithoutDelay();
+	}
+
+	/**
+	 * It opens the port without the delay for Arduino reset
+	 * 
+	 * jSerialComm 2.x waits only when it is asked (openPort(safetySleepTime)),
+	 * 1.3 always waits 500 ms; ArduinoAnalyzerCom waits for Arduino itself.
+	 * 
+	 * @return true if the port was opened
+	 */
+	private boolean openWithoutDelay() {
+		try {
+			return (Boolean) SerialPort.class.getMethod("openPort", int.class).invoke(port, 0);
+		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+			return port.openPort();
+		}
+	}
+
+	/**
+	 * It calls a SerialPort method without parameters if the library has it
+	 * 
+	 * @param method
+	 */
+	private void invokeIfPresent(String method) {
+		try {
+			SerialPort.class.getMethod(method).invoke(port);
+		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+			// older jSerialComm
+		}
+	}
+
+	/**
+	 * It disables hang-up on close (HUPCL) of the port by stty, so DTR stays
+	 * active after close and the next open does not reset Arduino
+	 * 
+	 * The setting belongs to the tty, it stays after the program exits until
+	 * "stty hupcl" or until the device is plugged in again.
+	 * 
+	 * @throws IOException
+	 *             stty is not available or it failed
+	 */
+	@Override
+	public void keepAnalyzerRunning() throws IOException {
+		String os = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+		String deviceOption;
+
+		if (os.contains("linux")) {
+			deviceOption = "-F";
+		} else if (os.contains("mac")) {
+			deviceOption = "-f";
+		} else {
+			throw new IOException("stty is not supported on " + os);
+		}
+
+		String device = name.startsWith("/") ? name : "/dev/" + name;
+		Process stty = new ProcessBuilder("stty", deviceOption, device, "-hupcl").redirectErrorStream(true).start();
+
+		try {
+			stty.getOutputStream().close();
+
+			if (!stty.waitFor(STTY_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+				stty.destroyForcibly().waitFor();
+				throw new IOException("stty did not finish within " + STTY_TIMEOUT_MS + " ms");
+			}
+
+			/* the output is short, it fits into the pipe */
+			String output = readAll(stty.getInputStream()).trim();
+
+			if (stty.exitValue() != 0) {
+				throw new IOException("stty failed: " + output);
+			}
+		} catch (InterruptedException e) {
+			stty.destroyForcibly();
+			Thread.currentThread().interrupt();
+			throw new IOException("stty was interrupted");
+		} finally {
+			stty.getInputStream().close();
+		}
+	}
+
+	private static String readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[256];
+		int count;
+
+		while ((count = in.read(buffer)) != -1) {
+			out.write(buffer, 0, count);
+		}
+		return out.toString();
+	}
+
+	@Override
+	public boolean close() {
+		return port.closePort();
+	}
+
+	@Override
+	public void setBaudRate(int rate) {
+		port.setBaudRate(rate);
+	}
+
+	@Override
+	public InputStream getInputStream() {
+		return port.getInputStream();
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		return port.getOutputStream();
+	}
+}
@@ -0,0 +1,346 @@
+/*
+ * SerialLineReader
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Background reader of the Arduino serial stream.
+ *
+ * A daemon thread pulls bytes from the port input stream into a ring buffer,
+ * splits them to lines and hands the lines over a bounded queue. Callers wait
+ * for a line with a deadline, therefore a hung device or a lost USB link
+ * cannot block them forever.
+ *
+ * Lines are passed as reusable byte buffers taken from a fixed pool, so the
+ * sweep data can be parsed without creating any object per line.
+ */
+public class SerialLineReader implements Runnable {
+
+	/* size of the ring buffer - it has to be power of 2 */
+	private static final int RING_SIZE = 4096;
+	private static final int RING_MASK = RING_SIZE - 1;
+
+	/* the longest accepted line; longer lines are cut */
+	private static final int MAX_LINE_LENGTH = 256;
+
+	/* how many received lines can wait for a caller */
+	private static final int QUEUE_CAPACITY = 1024;
+
+	/* how often the reader thread checks whether it should stop */
+	private static final int STOP_POLL_MS = 100;
+
+	/* received line; it has to be returned by recycle() after use */
+	public static class Line {
+		private final byte[] data = new byte[MAX_LINE_LENGTH];
+		private int length = 0;
+
+		public byte[] getData() {
+			return data;
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * Compares the line with ASCII text without creating a String
+		 *
+		 * @param text
+		 * @return true if the line is equal to the text
+		 */
+		public boolean equalsText(String text) {
+			if (text.length() != length) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (data[i] != text.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return new String(data, 0, length, StandardCharsets.US_ASCII);
+		}
+	}
+
+	private final InputStream input;
+	private final AnalyzerMetrics metrics;
+	private final BlockingQueue<Line> lines = new ArrayBlockingQueue<Line>(QUEUE_CAPACITY);
+	private final BlockingQueue<Line> freeLines = new ArrayBlockingQueue<Line>(QUEUE_CAPACITY + 2);
+
+	private final byte[] ring = new byte[RING_SIZE];
+	private long ringHead = 0; // write position
+	private long ringTail = 0; // read position
+
+	private Line currLine = null;
+
+	private volatile boolean running = false;
+	private volatile IOException failure = null;
+	private Thread thread;
+
+	/**
+	 * It prepares a reader for input stream
+	 *
+	 * The stream should return from read() periodically (semi-blocking
+	 * timeout), otherwise the reader cannot be stopped until next byte comes.
+	 *
+	 * @param in
+	 *            Serial port input stream
+	 */
+	public SerialLineReader(InputStream in) {
+		this(in, null);
+	}
+
+	/**
+	 * It prepares a reader for input stream which counts received bytes
+	 *
+	 * @param in
+	 *            Serial port input stream
+	 * @param in_metrics
+	 *            received bytes are added to it; can be null
+	 */
+	public SerialLineReader(InputStream in, AnalyzerMetrics in_metrics) {
+		input = in;
+		metrics = in_metrics;
+
+		for (int i = 0; i < QUEUE_CAPACITY + 2; i++) {
+			freeLines.add(new Line());
+		}
+	}
+
+	/**
+	 * It starts the reader thread
+	 *
+	 * @param name
+	 *            thread name
+	 */
+	public synchronized void start(String name) {
+		if (running) {
+			return;
+		}
+		running = true;
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * It stops the reader thread and waits for its end
+	 *
+	 * @param timeout
+	 *            max wait time in ms
+	 */
+	public synchronized void stop(int timeout) {
+		running = false;
+
+		if (thread == null) {
+			return;
+		}
+
+		thread.interrupt();
+
+		try {
+			thread.join(timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+	}
+
+	/**
+	 * Discards all received lines which were not read yet
+	 */
+	public void clear() {
+		Line line;
+
+		/* lines have to be emptied before reuse */
+		while ((line = lines.poll()) != null) {
+			recycle(line);
+		}
+	}
+
+	/**
+	 * Returns the line to the pool
+	 *
+	 * @param line
+	 *            line obtained from nextRawLine
+	 */
+	public void recycle(Line line) {
+		line.length = 0;
+		freeLines.offer(line);
+	}
+
+	/**
+	 * Gets next line with Timeout
+	 *
+	 * @param timeout
+	 *            max wait time in ms
+	 * @return received line without line terminator
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 *             the reader was stopped because of I/O error
+	 * @throws TimeoutException
+	 *             no line was received within timeout
+	 */
+	public String nextLine(int timeout) throws InterruptedException, ExecutionException, TimeoutException {
+		Line line = nextRawLine(timeout);
+		String text = line.toString();
+
+		recycle(line);
+		return text;
+	}
+
+	/**
+	 * Gets next line as bytes with Timeout
+	 *
+	 * The caller has to return the line by recycle()
+	 *
+	 * @param timeout
+	 *            max wait time in ms
+	 * @return received line without line terminator
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 *             the reader was stopped because of I/O error
+	 * @throws TimeoutException
+	 *             no line was received within timeout
+	 */
+	public Line nextRawLine(int timeout) throws InterruptedException, ExecutionException, TimeoutException {
+		Line line = lines.poll(timeout, TimeUnit.MILLISECONDS);
+
+		if (line != null) {
+			return line;
+		}
+
+		if (failure != null) {
+			throw new ExecutionException("Serial port read failed", failure);
+		}
+
+		throw new TimeoutException("No line received within " + timeout + " ms");
+	}
+
+	/**
+	 * Reader thread main loop
+	 */
+	@Override
+	public void run() {
+		try {
+			while (running) {
+				int offset = (int) (ringHead & RING_MASK);
+				int free = RING_SIZE - (int) (ringHead - ringTail);
+				int len = Math.min(free, RING_SIZE - offset);
+
+				int count = input.read(ring, offset, len);
+
+				if (count < 0) {
+					throw new IOException("Serial port has been closed");
+				}
+
+				ringHead += count;
+
+				if (metrics != null) {
+					metrics.addBytesReceived(count);
+				}
+
+				splitLines();
+			}
+		} catch (IOException e) {
+			if (running) {
+				failure = e;
+			}
+		} catch (InterruptedException e) {
+			// stop was requested
+		}
+		running = false;
+	}
+
+	/**
+	 * It moves all complete lines from the ring buffer to the queue
+	 *
+	 * @throws InterruptedException
+	 */
+	private void splitLines() throws InterruptedException {
+		while (ringTail < ringHead) {
+			if (currLine == null) {
+				currLine = takeFreeLine();
+				if (currLine == null) {
+					return;
+				}
+			}
+
+			byte b = ring[(int) (ringTail & RING_MASK)];
+			ringTail++;
+
+			if (b == '\n') {
+				publishLine();
+			} else if (b != '\r' && currLine.length < MAX_LINE_LENGTH) {
+				currLine.data[currLine.length++] = b;
+			}
+		}
+	}
+
+	/**
+	 * It takes an empty line from the pool. When all lines are used by
+	 * callers, it waits but it still reacts to stop request.
+	 *
+	 * @return empty line or null when the reader was stopped
+	 * @throws InterruptedException
+	 */
+	private Line takeFreeLine() throws InterruptedException {
+		while (running) {
+			Line line = freeLines.poll(STOP_POLL_MS, TimeUnit.MILLISECONDS);
+			if (line != null) {
+				return line;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * It publishes the collected line. When the queue is full, it waits for
+	 * callers but it still reacts to stop request.
+	 *
+	 * @throws InterruptedException
+	 */
+	private void publishLine() throws InterruptedException {
+		Line line = currLine;
+		currLine = null;
+
+		while (running) {
+			if (lines.offer(line, STOP_POLL_MS, TimeUnit.MILLISECONDS)) {
+				return;
+			}
+		}
+	}
+}
@@ -0,0 +1,581 @@
+/*
+ * SweepArchive
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only binary archive of sweeps
+ *
+ * The archive has two files:
+ *
+ * - NAME.idx - index, one fixed record per sweep: timestamp, offset of sweep
+ * data, number of points, first and last frequency and device name
+ *
+ * - NAME.dat - sweep data; each sweep is one block of columns: freq (long),
+ * SWR (float), FWD (int), REV (int), RAW_SWR (float)
+ *
+ * Files are written by FileChannel and read through memory-mapped buffers,
+ * so any sweep can be read without parsing and without loading the archive
+ * on heap. Sweeps have to be appended in time order, therefore the sweeps of
+ * a date range are found by binary search in the index. Points of a frequency
+ * range are found by binary search in the freq column.
+ *
+ * Data are written and forced to disk before the index record, so a written
+ * record never points to data which can be lost by a crash. When the archive
+ * is opened, the records are checked against the data file; an incomplete
+ * record, a record whose data are missing and all records behind it are
+ * dropped. A temporary archive can skip forcing (see the constructor).
+ *
+ * The archive is not thread-safe.
+ */
+public class SweepArchive {
+
+	private static final int INDEX_MAGIC = 0x53575049; // SWPI
+	private static final int DATA_MAGIC = 0x53575044; // SWPD
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+
+	/* index record */
+	private static final int REC_TIMESTAMP = 0;
+	private static final int REC_OFFSET = 8;
+	private static final int REC_POINTS = 16;
+	private static final int REC_START_FREQ = 24;
+	private static final int REC_STOP_FREQ = 32;
+	private static final int REC_DEVICE = 40;
+	private static final int DEVICE_LENGTH = 40;
+	private static final int RECORD_SIZE = REC_DEVICE + DEVICE_LENGTH;
+
+	/* bytes of one point in all columns */
+	private static final int POINT_SIZE = 8 + 4 + 4 + 4 + 4;
+
+	/* how much of the data file is mapped at once */
+	private static final long DATA_WINDOW = 64L * 1024 * 1024;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final FileChannel indexChannel;
+	private final FileChannel dataChannel;
+	private final boolean durable;
+
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final byte[] deviceBytes = new byte[DEVICE_LENGTH];
+
+	private int count;
+	private long dataEnd;
+	private long lastTimestamp = Long.MIN_VALUE;
+
+	private MappedByteBuffer indexMap = null;
+	private int indexMapCount = 0;
+
+	private MappedByteBuffer dataMap = null;
+	private long dataMapStart = 0;
+	private long dataMapEnd = 0;
+
+	/**
+	 * It opens the archive; missing files are created
+	 *
+	 * @param name
+	 *            path of the archive without extension
+	 * @throws IOException
+	 */
+	public SweepArchive(String name) throws IOException {
+		this(name, true);
+	}
+
+	/**
+	 * It opens the archive; missing files are created
+	 *
+	 * @param name
+	 *            path of the archive without extension
+	 * @param in_durable
+	 *            true - each append is forced to disk, false - appends can be
+	 *            lost by a crash (e.g. temporary archive)
+	 * @throws IOException
+	 */
+	public SweepArchive(String name, boolean in_durable) throws IOException {
+		durable = in_durable;
+		indexChannel = FileChannel.open(Paths.get(name + ".idx"), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			dataChannel = FileChannel.open(Paths.get(name + ".dat"), StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+		} catch (IOException e) {
+			indexChannel.close();
+			throw e;
+		}
+
+		try {
+			checkHeader(indexChannel, INDEX_MAGIC);
+			checkHeader(dataChannel, DATA_MAGIC);
+
+			/*
+			 * drop incomplete and invalid records and data behind the last
+			 * record; the files are mapped only after they are truncated
+			 */
+			count = validRecords((int) ((indexChannel.size() - HEADER_SIZE) / RECORD_SIZE), dataChannel.size());
+			indexChannel.truncate(HEADER_SIZE + (long) count * RECORD_SIZE);
+			dataChannel.truncate(dataEnd);
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * It checks the records in order; each one has to follow the previous one
+	 * in time and in the data file and its data have to be in the file.
+	 * dataEnd and lastTimestamp are set behind the last valid record.
+	 *
+	 * The index is read by the channel, not mapped, because it is truncated
+	 * after the check.
+	 *
+	 * @param records
+	 *            number of complete records in the index file
+	 * @param dataSize
+	 *            length of the data file
+	 * @return number of valid records
+	 * @throws IOException
+	 */
+	private int validRecords(int records, long dataSize) throws IOException {
+		int perRead = BUFFER_SIZE / RECORD_SIZE;
+
+		dataEnd = HEADER_SIZE;
+
+		for (int first = 0; first < records; first += perRead) {
+			int batch = Math.min(perRead, records - first);
+			long position = HEADER_SIZE + (long) first * RECORD_SIZE;
+
+			buffer.clear();
+			buffer.limit(batch * RECORD_SIZE);
+			while (buffer.hasRemaining()) {
+				if (indexChannel.read(buffer, position + buffer.position()) < 0) {
+					throw new IOException("Index is shorter than its size");
+				}
+			}
+
+			for (int i = 0; i < batch; i++) {
+				int record = i * RECORD_SIZE;
+				int points = buffer.getInt(record + REC_POINTS);
+				long timestamp = buffer.getLong(record + REC_TIMESTAMP);
+
+				if (points < 0 || buffer.getLong(record + REC_OFFSET) != dataEnd || timestamp < lastTimestamp
+						|| dataEnd + (long) points * POINT_SIZE > dataSize) {
+					buffer.clear();
+					return first + i;
+				}
+
+				dataEnd += (long) points * POINT_SIZE;
+				lastTimestamp = timestamp;
+			}
+		}
+
+		buffer.clear();
+		return records;
+	}
+
+	/**
+	 * It writes the header of a new file or checks the header of existing file
+	 *
+	 * @param channel
+	 * @param magic
+	 * @throws IOException
+	 */
+	private void checkHeader(FileChannel channel, int magic) throws IOException {
+		buffer.clear();
+
+		if (channel.size() == 0) {
+			buffer.putInt(magic).putInt(VERSION).flip();
+			writeFully(channel, 0);
+			return;
+		}
+
+		buffer.limit(HEADER_SIZE);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, buffer.position()) < 0) {
+				break;
+			}
+		}
+		buffer.flip();
+
+		if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != magic || buffer.getInt() != VERSION) {
+			throw new IOException("Not a sweep archive or unsupported version");
+		}
+	}
+
+	private void writeFully(FileChannel channel, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * It closes the archive files
+	 *
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		indexMap = null;
+		dataMap = null;
+		try {
+			indexChannel.close();
+		} finally {
+			dataChannel.close();
+		}
+	}
+
+	/**
+	 * It appends one sweep
+	 *
+	 * @param timestamp
+	 *            time of the sweep in ms since epoch; it must not be lower than
+	 *            the timestamp of the last sweep
+	 * @param device
+	 *            device name; only first 40 bytes of UTF-8 are stored
+	 * @param data
+	 * @throws IOException
+	 */
+	public void append(long timestamp, String device, SweepData data) throws IOException {
+		int points = data.size();
+
+		if (timestamp < lastTimestamp) {
+			throw new IllegalArgumentException("Sweeps have to be appended in time order");
+		}
+
+		/* columns */
+		long position = dataEnd;
+		buffer.clear();
+
+		for (int index = 0; index < points; index++) {
+			if (buffer.remaining() < 8) {
+				position = flushData(position);
+			}
+			buffer.putLong(data.getFreq(index));
+		}
+		for (int index = 0; index < points; index++) {
+			if (buffer.remaining() < 4) {
+				position = flushData(position);
+			}
+			buffer.putFloat(data.getSWR(index));
+		}
+		for (int index = 0; index < points; index++) {
+			if (buffer.remaining() < 4) {
+				position = flushData(position);
+			}
+			buffer.putInt(data.getFwd(index));
+		}
+		for (int index = 0; index < points; index++) {
+			if (buffer.remaining() < 4) {
+				position = flushData(position);
+			}
+			buffer.putInt(data.getRev(index));
+		}
+		for (int index = 0; index < points; index++) {
+			if (buffer.remaining() < 4) {
+				position = flushData(position);
+			}
+			buffer.putFloat(data.getRawSWR(index));
+		}
+		flushData(position);
+
+		/* the record must not point to data which are not on disk yet */
+		if (durable) {
+			dataChannel.force(false);
+		}
+
+		/* index record */
+		byte[] name = device.getBytes(StandardCharsets.UTF_8);
+
+		buffer.putLong(timestamp);
+		buffer.putLong(dataEnd);
+		buffer.putInt(points);
+		buffer.putInt(0);
+		buffer.putLong(points > 0 ? data.getFreq(0) : 0);
+		buffer.putLong(points > 0 ? data.getFreq(points - 1) : 0);
+		buffer.put(name, 0, deviceLength(name));
+		while (buffer.position() < RECORD_SIZE) {
+			buffer.put((byte) 0);
+		}
+		buffer.flip();
+		writeFully(indexChannel, HEADER_SIZE + (long) count * RECORD_SIZE);
+
+		if (durable) {
+			indexChannel.force(false);
+		}
+
+		dataEnd += (long) points * POINT_SIZE;
+		lastTimestamp = timestamp;
+		count++;
+	}
+
+	/**
+	 * Returns how many bytes of the name fit in the device field; the name
+	 * is cut before a character, so a multi-byte character is never split
+	 *
+	 * @param name
+	 *            UTF-8 bytes
+	 * @return length
+	 */
+	static int deviceLength(byte[] name) {
+		if (name.length <= DEVICE_LENGTH) {
+			return name.length;
+		}
+
+		int length = DEVICE_LENGTH;
+
+		/* 10xxxxxx is a continuation byte of the previous character */
+		while (length > 0 && (name[length] & 0xC0) == 0x80) {
+			length--;
+		}
+		return length;
+	}
+
+	private long flushData(long position) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			position += dataChannel.write(buffer, position);
+		}
+		buffer.clear();
+		return position;
+	}
+
+	/**
+	 * @return number of sweeps in the archive
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Returns position of the index record in mapped index; the index is
+	 * mapped again when it has grown
+	 *
+	 * @param sweep
+	 * @return position
+	 * @throws IOException
+	 */
+	private int record(int sweep) throws IOException {
+		if (sweep < 0 || sweep >= count) {
+			throw new IndexOutOfBoundsException("Sweep " + sweep + " of " + count);
+		}
+
+		if (sweep >= indexMapCount) {
+			indexMap = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE + (long) count * RECORD_SIZE);
+			indexMapCount = count;
+		}
+		return HEADER_SIZE + sweep * RECORD_SIZE;
+	}
+
+	private long indexLong(int sweep, int field) throws IOException {
+		int position = record(sweep);
+		return indexMap.getLong(position + field);
+	}
+
+	public long getTimestamp(int sweep) throws IOException {
+		return indexLong(sweep, REC_TIMESTAMP);
+	}
+
+	public int getPoints(int sweep) throws IOException {
+		int position = record(sweep);
+		return indexMap.getInt(position + REC_POINTS);
+	}
+
+	public long getStartFreq(int sweep) throws IOException {
+		return indexLong(sweep, REC_START_FREQ);
+	}
+
+	public long getStopFreq(int sweep) throws IOException {
+		return indexLong(sweep, REC_STOP_FREQ);
+	}
+
+	public String getDevice(int sweep) throws IOException {
+		int position = record(sweep) + REC_DEVICE;
+		int length = 0;
+
+		while (length < DEVICE_LENGTH && indexMap.get(position + length) != 0) {
+			deviceBytes[length] = indexMap.get(position + length);
+			length++;
+		}
+		return new String(deviceBytes, 0, length, StandardCharsets.UTF_8);
+	}
+
+	private long getDataOffset(int sweep) throws IOException {
+		return indexLong(sweep, REC_OFFSET);
+	}
+
+	/**
+	 * Finds the first sweep measured at or after the time
+	 *
+	 * @param timestamp
+	 *            ms since epoch
+	 * @return sweep index or size() when there is no such sweep
+	 * @throws IOException
+	 */
+	public int findSweep(long timestamp) throws IOException {
+		int low = 0;
+		int high = count;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (getTimestamp(middle) < timestamp) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * It reads whole sweep
+	 *
+	 * @param sweep
+	 *            sweep index
+	 * @param out
+	 *            it is cleared and filled with the sweep points
+	 * @throws IOException
+	 */
+	public void read(int sweep, SweepData out) throws IOException {
+		read(sweep, Long.MIN_VALUE, Long.MAX_VALUE, out);
+	}
+
+	/**
+	 * It reads points of the sweep in frequency range
+	 *
+	 * @param sweep
+	 *            sweep index
+	 * @param startFreq
+	 *            the lowest frequency in Hz (inclusive)
+	 * @param stopFreq
+	 *            the highest frequency in Hz (inclusive)
+	 * @param out
+	 *            it is cleared and filled with the points
+	 * @throws IOException
+	 */
+	public void read(int sweep, long startFreq, long stopFreq, SweepData out) throws IOException {
+		int points = getPoints(sweep);
+		ByteBuffer map = mapData(getDataOffset(sweep), (long) points * POINT_SIZE);
+		int freqColumn = map.position();
+		int swrColumn = freqColumn + points * 8;
+		int fwdColumn = swrColumn + points * 4;
+		int revColumn = fwdColumn + points * 4;
+		int rawColumn = revColumn + points * 4;
+
+		out.clear();
+
+		/* the first point in range - freq column is sorted */
+		int low = 0;
+		int high = points;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (map.getLong(freqColumn + middle * 8) < startFreq) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		for (int index = low; index < points; index++) {
+			long freq = map.getLong(freqColumn + index * 8);
+
+			if (freq > stopFreq) {
+				break;
+			}
+			out.add(freq, map.getFloat(swrColumn + index * 4), map.getInt(fwdColumn + index * 4),
+					map.getInt(revColumn + index * 4), map.getFloat(rawColumn + index * 4));
+		}
+	}
+
+	/**
+	 * It reads all sweeps in time and frequency range
+	 *
+	 * Sweeps which do not cover the frequency range are skipped.
+	 *
+	 * @param fromTime
+	 *            ms since epoch (inclusive)
+	 * @param toTime
+	 *            ms since epoch (exclusive)
+	 * @param startFreq
+	 *            Hz (inclusive)
+	 * @param stopFreq
+	 *            Hz (inclusive)
+	 * @param out
+	 *            buffer reused for each sweep
+	 * @param listener
+	 *            receives each sweep
+	 * @throws IOException
+	 */
+	public void scan(long fromTime, long toTime, long startFreq, long stopFreq, SweepData out,
+			ArchiveScanListener listener) throws IOException {
+		for (int sweep = findSweep(fromTime); sweep < count; sweep++) {
+			long timestamp = getTimestamp(sweep);
+
+			if (timestamp >= toTime) {
+				break;
+			}
+			if (getPoints(sweep) == 0 || getStopFreq(sweep) < startFreq || getStartFreq(sweep) > stopFreq) {
+				continue;
+			}
+
+			read(sweep, startFreq, stopFreq, out);
+			listener.sweepFound(sweep, timestamp, getDevice(sweep), out);
+		}
+	}
+
+	/**
+	 * Returns mapped data; the buffer position is set to the offset
+	 *
+	 * The data file is mapped by windows, a new window is mapped only when
+	 * the block is not in the current one.
+	 *
+	 * @param offset
+	 *            file offset of the block
+	 * @param length
+	 *            block length
+	 * @return mapped buffer
+	 * @throws IOException
+	 */
+	private ByteBuffer mapData(long offset, long length) throws IOException {
+		if (dataMap == null || offset < dataMapStart || offset + length > dataMapEnd) {
+			long size = Math.min(Math.max(length, DATA_WINDOW), dataEnd - offset);
+
+			dataMap = dataChannel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+			dataMapStart = offset;
+			dataMapEnd = offset + size;
+		}
+
+		dataMap.position((int) (offset - dataMapStart));
+		return dataMap;
+	}
+}
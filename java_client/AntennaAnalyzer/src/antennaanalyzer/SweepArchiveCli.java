@@ -0,0 +1,193 @@
+/*
+ * SweepArchiveCli
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Command line export of archived sweeps
+ *
+ * It reads sweeps of a time and frequency range from the sweep archive
+ * written by AntennaAnalyzerCli -A (see SweepArchive.scan) and writes them to
+ * stdout as "Device,Sweep,Time,Frequence_HZ,SWR,FWD,REV,RAW_SWR". Only the
+ * index and the requested points are read, the archive is not loaded.
+ *
+ * Usage:
+ *
+ * SweepArchiveCli -A ARCHIVE [-s FROM] [-e TO] [-a START_HZ] [-b STOP_HZ]
+ *
+ * FROM (inclusive) and TO (exclusive) are local date or date-time, e.g.
+ * 2018-05-01 or 2018-05-01T12:00. Without them, all sweeps are exported.
+ */
+public class SweepArchiveCli {
+
+	private static final int EXIT_USAGE = 1;
+	private static final int EXIT_EXPORT = 3;
+
+	private String archiveName = null;
+	private long fromTime = Long.MIN_VALUE;
+	private long toTime = Long.MAX_VALUE;
+	private long startFreq = Long.MIN_VALUE;
+	private long stopFreq = Long.MAX_VALUE;
+
+	private static void usage(String error) {
+		if (error != null) {
+			System.err.println(error);
+		}
+		System.err.println("Usage: SweepArchiveCli -A ARCHIVE [-s FROM] [-e TO] [-a START_HZ] [-b STOP_HZ]");
+		System.exit(EXIT_USAGE);
+	}
+
+	/**
+	 * It parses command line arguments
+	 *
+	 * @param args
+	 */
+	private void parseArgs(String[] args) {
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+
+				if (i + 1 >= args.length) {
+					usage("Missing value of " + arg);
+				}
+
+				String value = args[++i];
+
+				switch (arg) {
+				case "-A":
+					archiveName = value;
+					break;
+				case "-s":
+					fromTime = parseTime(value);
+					break;
+				case "-e":
+					toTime = parseTime(value);
+					break;
+				case "-a":
+					startFreq = Long.parseLong(value);
+					break;
+				case "-b":
+					stopFreq = Long.parseLong(value);
+					break;
+				default:
+					usage("Unknown option " + arg);
+				}
+			}
+		} catch (NumberFormatException e) {
+			usage("Not a number: " + e.getMessage());
+		} catch (DateTimeParseException e) {
+			usage("Not a date: " + e.getParsedString());
+		}
+
+		if (archiveName == null || toTime <= fromTime || stopFreq < startFreq) {
+			usage(null);
+		}
+	}
+
+	/**
+	 * @param value
+	 *            local date or date-time
+	 * @return ms since epoch
+	 */
+	private static long parseTime(String value) {
+		LocalDateTime time;
+
+		if (value.indexOf('T') < 0) {
+			time = LocalDate.parse(value).atStartOfDay();
+		} else {
+			time = LocalDateTime.parse(value);
+		}
+		return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
+	/**
+	 * It writes all sweeps in range
+	 *
+	 * @return exit code
+	 * @throws IOException
+	 */
+	private int run() throws IOException {
+		final Writer stdout = new BufferedWriter(new OutputStreamWriter(System.out));
+		final StringBuilder text = new StringBuilder();
+		final int[] sweeps = new int[1];
+		SweepArchive archive;
+
+		try {
+			archive = new SweepArchive(archiveName);
+		} catch (IOException e) {
+			System.err.println("Cannot open archive " + archiveName + ": " + e.getMessage());
+			return EXIT_EXPORT;
+		}
+
+		try {
+			stdout.write("Device,Sweep,Time,Frequence_HZ,SWR,FWD,REV,RAW_SWR\n");
+
+			archive.scan(fromTime, toTime, startFreq, stopFreq, new SweepData(), new ArchiveScanListener() {
+				@Override
+				public void sweepFound(int index, long timestamp, String device, SweepData data) {
+					LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp),
+							ZoneId.systemDefault());
+
+					text.setLength(0);
+					AntennaAnalyzerCli.formatSweep(device + "," + index + "," + time + ",", data, text);
+
+					try {
+						stdout.append(text);
+					} catch (IOException e) {
+						throw new IllegalStateException("Cannot write the result", e);
+					}
+					sweeps[0]++;
+				}
+			});
+			stdout.flush();
+		} finally {
+			archive.close();
+		}
+
+		System.err.println(sweeps[0] + " of " + archive.size() + " sweeps exported");
+		return 0;
+	}
+
+	/**
+	 * Main
+	 *
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		SweepArchiveCli cli = new SweepArchiveCli();
+
+		cli.parseArgs(args);
+		System.exit(cli.run());
+	}
+}
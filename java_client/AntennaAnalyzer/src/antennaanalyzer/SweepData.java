@@ -0,0 +1,137 @@
+/*
+ * SweepData
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.util.Arrays;
+
+/**
+ * Sweep result stored in primitive columns
+ *
+ * One row means one sweep line <FREQ, SWR, FWD, REV, RAW_SWR>. The columns
+ * grow when needed and they are reused by next sweeps, therefore repeated
+ * sweeps do not create any object per point.
+ */
+public class SweepData {
+
+	private static final int DEFAULT_CAPACITY = 512;
+
+	private long[] freq; // in Hz
+	private float[] swr;
+	private int[] fwd;
+	private int[] rev;
+	private float[] rawSWR;
+	private int size = 0;
+
+	public SweepData() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates columns for expected number of points
+	 *
+	 * @param capacity
+	 */
+	public SweepData(int capacity) {
+		capacity = Math.max(capacity, 1);
+		freq = new long[capacity];
+		swr = new float[capacity];
+		fwd = new int[capacity];
+		rev = new int[capacity];
+		rawSWR = new float[capacity];
+	}
+
+	/**
+	 * Removes all points. Columns are kept for next sweep.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * It adds one sweep point
+	 *
+	 * @param in_freq
+	 *            frequency in Hz
+	 * @param in_swr
+	 * @param in_fwd
+	 * @param in_rev
+	 * @param in_rawSWR
+	 */
+	public void add(long in_freq, float in_swr, int in_fwd, int in_rev, float in_rawSWR) {
+		if (size == freq.length) {
+			grow();
+		}
+
+		freq[size] = in_freq;
+		swr[size] = in_swr;
+		fwd[size] = in_fwd;
+		rev[size] = in_rev;
+		rawSWR[size] = in_rawSWR;
+		size++;
+	}
+
+	private void grow() {
+		int capacity = freq.length * 2;
+
+		freq = Arrays.copyOf(freq, capacity);
+		swr = Arrays.copyOf(swr, capacity);
+		fwd = Arrays.copyOf(fwd, capacity);
+		rev = Arrays.copyOf(rev, capacity);
+		rawSWR = Arrays.copyOf(rawSWR, capacity);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long getFreq(int index) {
+		return freq[index];
+	}
+
+	public float getSWR(int index) {
+		return swr[index];
+	}
+
+	/**
+	 * It replaces SWR of the point (e.g. by calibrated value)
+	 *
+	 * @param index
+	 * @param in_swr
+	 */
+	public void setSWR(int index, float in_swr) {
+		swr[index] = in_swr;
+	}
+
+	public int getFwd(int index) {
+		return fwd[index];
+	}
+
+	public int getRev(int index) {
+		return rev[index];
+	}
+
+	public float getRawSWR(int index) {
+		return rawSWR[index];
+	}
+}
@@ -0,0 +1,265 @@
+/*
+ * SweepExporter
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Export of sweep results to CSV and Touchstone files
+ *
+ * Rows are formatted directly to ASCII bytes in one reusable buffer which is
+ * written to a FileChannel whenever it is almost full. No object is created
+ * per row, therefore the memory does not depend on the number of points.
+ *
+ * The exporter is not thread-safe; use one exporter per thread.
+ */
+public class SweepExporter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/* the longest formatted row must fit in the rest of the buffer */
+	private static final int MAX_ROW_LENGTH = 256;
+
+	private static final int SWR_DECIMALS = 2;
+
+	/* RAW_SWR is received with 3 decimals (binary frames send RAW_SWR*1000) */
+	private static final int RAW_SWR_DECIMALS = 3;
+	private static final int S11_DECIMALS = 6;
+
+	/* reference impedance of Touchstone file */
+	private static final int REFERENCE_OHM = 50;
+
+	private static final long[] POW10 = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L };
+
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final byte[] digits = new byte[20];
+
+	private FileChannel channel;
+
+	/**
+	 * It writes one sweep to CSV file
+	 *
+	 * Columns: Frequence_HZ,SWR,FWD,REV,RAW_SWR
+	 *
+	 * @param filename
+	 * @param data
+	 * @throws IOException
+	 */
+	public void writeCSV(String filename, SweepData data) throws IOException {
+		open(filename);
+		try {
+			putText("Frequence_HZ,SWR,FWD,REV,RAW_SWR\n");
+			putRows(null, data);
+			flush();
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * It writes several series to one CSV file
+	 *
+	 * Columns: Serie,Frequence_HZ,SWR,FWD,REV,RAW_SWR. Empty series are
+	 * skipped.
+	 *
+	 * @param filename
+	 * @param series
+	 *            serie name and its data
+	 * @throws IOException
+	 */
+	public void writeCSV(String filename, Map<String, SweepData> series) throws IOException {
+		open(filename);
+		try {
+			putText("Serie,Frequence_HZ,SWR,FWD,REV,RAW_SWR\n");
+			for (Map.Entry<String, SweepData> serie : series.entrySet()) {
+				putRows(serie.getKey().getBytes(StandardCharsets.US_ASCII), serie.getValue());
+			}
+			flush();
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * It writes one sweep to Touchstone S1P file
+	 *
+	 * The analyzer measures SWR only, therefore S11 magnitude is derived from
+	 * SWR, |S11| = (SWR - 1) / (SWR + 1), and the angle is always 0.
+	 *
+	 * @param filename
+	 * @param data
+	 * @throws IOException
+	 */
+	public void writeTouchstone(String filename, SweepData data) throws IOException {
+		open(filename);
+		try {
+			putText("! Antenna Analyzer sweep\n");
+			putText("! S11 magnitude derived from SWR, phase is not measured\n");
+			putText("# HZ S MA R " + REFERENCE_OHM + "\n");
+
+			for (int index = 0; index < data.size(); index++) {
+				double swr = data.getSWR(index);
+
+				ensureRow();
+				putLong(data.getFreq(index));
+				buffer.put((byte) ' ');
+				putFixed((swr - 1) / (swr + 1), S11_DECIMALS);
+				buffer.put((byte) ' ');
+				buffer.put((byte) '0');
+				buffer.put((byte) '\n');
+			}
+			flush();
+		} finally {
+			close();
+		}
+	}
+
+	private void putRows(byte[] prefix, SweepData data) throws IOException {
+		for (int index = 0; index < data.size(); index++) {
+			ensureRow();
+			if (prefix != null) {
+				buffer.put(prefix, 0, Math.min(prefix.length, MAX_ROW_LENGTH / 2));
+				buffer.put((byte) ',');
+			}
+			putLong(data.getFreq(index));
+			buffer.put((byte) ',');
+			putFixed(data.getSWR(index), SWR_DECIMALS);
+			buffer.put((byte) ',');
+			putLong(data.getFwd(index));
+			buffer.put((byte) ',');
+			putLong(data.getRev(index));
+			buffer.put((byte) ',');
+			putFixed(data.getRawSWR(index), RAW_SWR_DECIMALS);
+			buffer.put((byte) '\n');
+		}
+	}
+
+	private void open(String filename) throws IOException {
+		channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		buffer.clear();
+	}
+
+	private void close() throws IOException {
+		buffer.clear();
+		channel.close();
+		channel = null;
+	}
+
+	/**
+	 * It writes the buffer to the file
+	 *
+	 * @throws IOException
+	 */
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * It makes room for next row
+	 *
+	 * @throws IOException
+	 */
+	private void ensureRow() throws IOException {
+		if (buffer.remaining() < MAX_ROW_LENGTH) {
+			flush();
+		}
+	}
+
+	private void putText(String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+
+		if (buffer.remaining() < bytes.length) {
+			flush();
+		}
+		buffer.put(bytes);
+	}
+
+	/**
+	 * It writes decimal number without creating a String
+	 *
+	 * @param value
+	 */
+	private void putLong(long value) {
+		if (value < 0) {
+			buffer.put((byte) '-');
+			value = -value;
+		}
+
+		int count = 0;
+		do {
+			digits[count++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+
+		while (count > 0) {
+			buffer.put(digits[--count]);
+		}
+	}
+
+	/**
+	 * It writes number with fixed number of decimals (rounded half up)
+	 *
+	 * @param value
+	 * @param decimals
+	 */
+	private void putFixed(double value, int decimals) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			putAscii(Double.toString(value));
+			return;
+		}
+
+		if (value < 0) {
+			buffer.put((byte) '-');
+			value = -value;
+		}
+
+		long scaled = Math.round(value * POW10[decimals]);
+		long fraction = scaled % POW10[decimals];
+
+		putLong(scaled / POW10[decimals]);
+		buffer.put((byte) '.');
+
+		for (int i = decimals - 1; i > 0 && fraction < POW10[i]; i--) {
+			buffer.put((byte) '0');
+		}
+		putLong(fraction);
+	}
+
+	private void putAscii(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			buffer.put((byte) text.charAt(i));
+		}
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * SweepFrameCodec
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Binary sweep frames ('x' command)
+ *
+ * Arduino sends a header line
+ *
+ * #BIN <FREQ_START>,<FREQ_STEP>,<POINTS>
+ *
+ * and then one frame per point; the frame is one line. The frame has 12
+ * bytes (little-endian):
+ *
+ * <SEQ:u16, SWR*100:u16, ANALOG_FWD:i16, ANALOG_REV:i16, RAW_SWR*1000:u16,
+ * CRC16:u16>
+ *
+ * CRC is CRC-16/CCITT-FALSE of the first 10 bytes. Bytes '\n', '\r' and ESC
+ * (0x1B) are sent as ESC, byte ^ 0x20, therefore a frame never contains a
+ * line terminator and a damaged frame does not affect the next one.
+ * Frequency of a point is FREQ_START + SEQ * FREQ_STEP.
+ *
+ * A frame has about 13 bytes on the line, the text line has about 35 bytes.
+ *
+ * The codec keeps its buffers; it is not thread-safe.
+ */
+public class SweepFrameCodec {
+
+	public static final String HEADER = "#BIN ";
+
+	public static final int FRAME_SIZE = 12;
+
+	/* the longest escaped frame including '\n' */
+	public static final int MAX_ENCODED_SIZE = 2 * FRAME_SIZE + 1;
+
+	private static final int PAYLOAD_SIZE = FRAME_SIZE - 2;
+	private static final byte ESCAPE = 0x1B;
+
+	private final ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+	private long startFreq;
+	private long freqStep;
+	private int points;
+	private int nextSeq;
+
+	/**
+	 * It parses the header line and prepares the decoder for the frames
+	 *
+	 * @param line
+	 *            header line
+	 * @throws IOException
+	 *             the line is not a header
+	 */
+	public void startSweep(String line) throws IOException {
+		if (!line.startsWith(HEADER)) {
+			throw new IOException("Unexpected sweep header: " + line);
+		}
+
+		String[] items = line.substring(HEADER.length()).split(",");
+
+		try {
+			if (items.length != 3) {
+				throw new NumberFormatException();
+			}
+			startFreq = Long.parseLong(items[0].trim());
+			freqStep = Long.parseLong(items[1].trim());
+			points = Integer.parseInt(items[2].trim());
+		} catch (NumberFormatException e) {
+			throw new IOException("Unexpected sweep header: " + line);
+		}
+		nextSeq = 0;
+	}
+
+	/**
+	 * @return number of points announced by the header
+	 */
+	public int getPoints() {
+		return points;
+	}
+
+	/**
+	 * @return number of decoded points
+	 */
+	public int getDecodedPoints() {
+		return nextSeq;
+	}
+
+	/**
+	 * It decodes one frame line and stores the point to sweep data
+	 *
+	 * @param line
+	 *            line bytes without '\n'
+	 * @param length
+	 *            number of valid bytes
+	 * @param out
+	 *            sweep data where the point is added
+	 * @throws IOException
+	 *             wrong length, CRC error or a point is missing
+	 */
+	public void decode(byte[] line, int length, SweepData out) throws IOException {
+		frame.clear();
+
+		for (int i = 0; i < length; i++) {
+			byte b = line[i];
+
+			if (b == ESCAPE && ++i < length) {
+				b = (byte) (line[i] ^ 0x20);
+			}
+			if (!frame.hasRemaining()) {
+				throw new IOException("Sweep frame " + nextSeq + " is too long");
+			}
+			frame.put(b);
+		}
+
+		if (frame.position() != FRAME_SIZE) {
+			throw new IOException("Sweep frame " + nextSeq + " is too short");
+		}
+
+		if (crc16(frame.array(), PAYLOAD_SIZE) != frame.getChar(PAYLOAD_SIZE)) {
+			throw new IOException("CRC error in sweep frame " + nextSeq);
+		}
+
+		int seq = frame.getChar(0);
+
+		if (seq != nextSeq) {
+			throw new IOException("Sweep frame " + nextSeq + " is missing");
+		}
+		nextSeq++;
+
+		out.add(startFreq + seq * freqStep, frame.getChar(2) / 100.0f, frame.getShort(4), frame.getShort(6),
+				frame.getChar(8) / 1000.0f);
+	}
+
+	/**
+	 * It encodes one sweep point (used by simulated devices)
+	 *
+	 * @param seq
+	 *            point index
+	 * @param swr
+	 * @param fwd
+	 * @param rev
+	 * @param rawSWR
+	 * @param out
+	 *            encoded frame including '\n'; at least MAX_ENCODED_SIZE
+	 *            bytes
+	 * @param offset
+	 *            position in out
+	 * @return number of written bytes
+	 */
+	public int encode(int seq, float swr, int fwd, int rev, float rawSWR, byte[] out, int offset) {
+		frame.clear();
+		frame.putChar((char) seq);
+		frame.putChar((char) Math.round(swr * 100.0f));
+		frame.putShort((short) fwd);
+		frame.putShort((short) rev);
+		frame.putChar((char) Math.round(rawSWR * 1000.0f));
+		frame.putChar(crc16(frame.array(), PAYLOAD_SIZE));
+
+		int pos = offset;
+
+		for (int i = 0; i < FRAME_SIZE; i++) {
+			byte b = frame.get(i);
+
+			if (b == '\n' || b == '\r' || b == ESCAPE) {
+				out[pos++] = ESCAPE;
+				b ^= 0x20;
+			}
+			out[pos++] = b;
+		}
+		out[pos++] = '\n';
+		return pos - offset;
+	}
+
+	/**
+	 * CRC-16/CCITT-FALSE (the same as crc16_update() in Arduino)
+	 *
+	 * @param data
+	 * @param length
+	 * @return CRC
+	 */
+	private static char crc16(byte[] data, int length) {
+		int crc = 0xFFFF;
+
+		for (int i = 0; i < length; i++) {
+			crc ^= (data[i] & 0xFF) << 8;
+			for (int bit = 0; bit < 8; bit++) {
+				crc = ((crc & 0x8000) != 0) ? (crc << 1) ^ 0x1021 : crc << 1;
+			}
+		}
+		return (char) crc;
+	}
+}
@@ -0,0 +1,339 @@
+/*
+ * SweepHistory
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * History of retained sweeps with a memory budget
+ *
+ * Each retained sweep gets an id. Sweeps are kept in memory until their size
+ * exceeds the budget; then the least recently used sweeps are spilled to a
+ * temporary SweepArchive and they are loaded back when they are requested.
+ * A sweep is written to the archive only once because retained sweeps do not
+ * change.
+ *
+ * A sweep shown as an overlay is copied to the chart dataset. The copy is
+ * counted in the same budget (see showOverlay), so overlays of spilled
+ * sweeps cannot load the history back to memory without a limit.
+ *
+ * All methods are synchronized, the history can be used from sweep threads
+ * and from Event Dispatch Thread.
+ */
+public class SweepHistory {
+
+	/* bytes of one point in SweepData columns */
+	private static final int POINT_SIZE = 8 + 4 + 4 + 4 + 4;
+
+	/* bytes of one overlay point in SWRDataset (freq and SWR as double) */
+	private static final int OVERLAY_POINT_SIZE = 8 + 8;
+
+	private static class Entry {
+		private final String label;
+		private final long timestamp;
+		private final int points;
+		private SweepData data;
+		private int archiveIndex = -1;
+		private boolean overlay = false;
+
+		private Entry(String label, long timestamp, SweepData data) {
+			this.label = label;
+			this.timestamp = timestamp;
+			this.points = data.size();
+			this.data = data;
+		}
+	}
+
+	/* all retained sweeps by id */
+	private final TreeMap<Integer, Entry> entries = new TreeMap<Integer, Entry>();
+
+	/* sweeps in memory in access order - the first is the least recently used */
+	private final LinkedHashMap<Integer, Entry> inMemory = new LinkedHashMap<Integer, Entry>(16, 0.75f, true);
+
+	private long memoryBudget;
+	private long memoryUsage = 0;
+	private int nextId = 1;
+
+	private File spillFile = null;
+	private SweepArchive spill = null;
+	private long spillTime = 0;
+
+	/**
+	 * Creates empty history
+	 *
+	 * @param memoryBudget
+	 *            max bytes of sweeps kept in memory
+	 */
+	public SweepHistory(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * It changes the memory budget; sweeps above the budget are spilled
+	 *
+	 * @param budget
+	 *            bytes
+	 * @throws IOException
+	 */
+	public synchronized void setMemoryBudget(long budget) throws IOException {
+		memoryBudget = budget;
+		evict(null);
+	}
+
+	public synchronized long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * @return bytes of sweeps and overlays kept in memory
+	 */
+	public synchronized long getMemoryUsage() {
+		return memoryUsage;
+	}
+
+	/**
+	 * It retains a copy of the sweep
+	 *
+	 * @param label
+	 *            name shown to user
+	 * @param data
+	 *            sweep; it is copied
+	 * @return id of retained sweep
+	 * @throws IOException
+	 *             older sweeps could not be spilled
+	 */
+	public synchronized int add(String label, SweepData data) throws IOException {
+		SweepData copy = new SweepData(data.size());
+
+		for (int index = 0; index < data.size(); index++) {
+			copy.add(data.getFreq(index), data.getSWR(index), data.getFwd(index), data.getRev(index),
+					data.getRawSWR(index));
+		}
+
+		Entry entry = new Entry(label, System.currentTimeMillis(), copy);
+		int id = nextId++;
+
+		entries.put(id, entry);
+		inMemory.put(id, entry);
+		memoryUsage += (long) entry.points * POINT_SIZE;
+		evict(entry);
+
+		return id;
+	}
+
+	/**
+	 * Returns the retained sweep; a spilled sweep is loaded from disk
+	 *
+	 * The returned data must not be changed.
+	 *
+	 * @param id
+	 * @return sweep data or null when there is no such sweep
+	 * @throws IOException
+	 */
+	public synchronized SweepData get(int id) throws IOException {
+		Entry entry = entries.get(id);
+
+		if (entry == null) {
+			return null;
+		}
+
+		if (entry.data == null) {
+			SweepData data = new SweepData(entry.points);
+
+			spill.read(entry.archiveIndex, data);
+			entry.data = data;
+			memoryUsage += (long) entry.points * POINT_SIZE;
+			inMemory.put(id, entry);
+			evict(entry);
+		} else {
+			/* mark as recently used */
+			inMemory.get(id);
+		}
+
+		return entry.data;
+	}
+
+	/**
+	 * It counts the overlay copy of the sweep in the memory budget; other
+	 * sweeps are spilled to make room for it
+	 *
+	 * @param id
+	 * @return false when there is no such sweep or the shown overlays would
+	 *         exceed the budget
+	 * @throws IOException
+	 *             older sweeps could not be spilled
+	 */
+	public synchronized boolean showOverlay(int id) throws IOException {
+		Entry entry = entries.get(id);
+
+		if (entry == null) {
+			return false;
+		}
+		if (entry.overlay) {
+			return true;
+		}
+
+		entry.overlay = true;
+		memoryUsage += (long) entry.points * OVERLAY_POINT_SIZE;
+		evict(null);
+
+		/* only overlays are left in memory */
+		if (memoryUsage > memoryBudget) {
+			hideOverlay(id);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * The overlay copy of the sweep was removed from the chart
+	 *
+	 * @param id
+	 */
+	public synchronized void hideOverlay(int id) {
+		Entry entry = entries.get(id);
+
+		if (entry != null && entry.overlay) {
+			entry.overlay = false;
+			memoryUsage -= (long) entry.points * OVERLAY_POINT_SIZE;
+		}
+	}
+
+	/**
+	 * It removes the sweep from history
+	 *
+	 * Spilled data stay in the temporary archive until close().
+	 *
+	 * @param id
+	 */
+	public synchronized void remove(int id) {
+		hideOverlay(id);
+
+		Entry entry = entries.remove(id);
+
+		if (inMemory.remove(id) != null) {
+			memoryUsage -= (long) entry.points * POINT_SIZE;
+		}
+	}
+
+	/**
+	 * @return ids of all retained sweeps in the order they were added
+	 */
+	public synchronized List<Integer> getIds() {
+		return new ArrayList<Integer>(entries.keySet());
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized String getLabel(int id) {
+		Entry entry = entries.get(id);
+		return (entry == null) ? null : entry.label;
+	}
+
+	public synchronized long getTimestamp(int id) {
+		Entry entry = entries.get(id);
+		return (entry == null) ? 0 : entry.timestamp;
+	}
+
+	/**
+	 * @param id
+	 * @return true when the sweep is in memory, false when it is spilled
+	 */
+	public synchronized boolean isInMemory(int id) {
+		Entry entry = entries.get(id);
+		return entry != null && entry.data != null;
+	}
+
+	/**
+	 * It spills the least recently used sweeps until the memory usage is in
+	 * budget. The sweep which is just used stays in memory.
+	 *
+	 * @param keep
+	 *            entry which must not be spilled or null
+	 * @throws IOException
+	 */
+	private void evict(Entry keep) throws IOException {
+		Iterator<Entry> iterator = inMemory.values().iterator();
+
+		while (memoryUsage > memoryBudget && iterator.hasNext()) {
+			Entry entry = iterator.next();
+
+			if (entry == keep) {
+				continue;
+			}
+
+			if (entry.archiveIndex < 0) {
+				openSpill();
+				/* the archive needs time order, spills are not in time order */
+				spillTime = Math.max(spillTime, entry.timestamp);
+				spill.append(spillTime, entry.label, entry.data);
+				entry.archiveIndex = spill.size() - 1;
+			}
+
+			entry.data = null;
+			iterator.remove();
+			memoryUsage -= (long) entry.points * POINT_SIZE;
+		}
+	}
+
+	private void openSpill() throws IOException {
+		if (spill != null) {
+			return;
+		}
+
+		spillFile = File.createTempFile("sweep-history", "");
+		/* the spill is deleted on exit, it does not need to survive a crash */
+		spill = new SweepArchive(spillFile.getPath(), false);
+		new File(spillFile.getPath() + ".idx").deleteOnExit();
+		new File(spillFile.getPath() + ".dat").deleteOnExit();
+		spillFile.deleteOnExit();
+	}
+
+	/**
+	 * It removes all sweeps and deletes the temporary archive
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		entries.clear();
+		inMemory.clear();
+		memoryUsage = 0;
+
+		if (spill != null) {
+			spill.close();
+			spill = null;
+			new File(spillFile.getPath() + ".idx").delete();
+			new File(spillFile.getPath() + ".dat").delete();
+			spillFile.delete();
+		}
+	}
+}
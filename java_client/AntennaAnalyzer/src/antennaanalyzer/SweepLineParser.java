@@ -0,0 +1,181 @@
+/*
+ * SweepLineParser
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+/**
+ * Parser of perform_sweep lines
+ *
+ * Arduino sends one line per sweep point in following format
+ *
+ * <FREQ, SWR, ANALOG_FWD, ANALOG_REV, RAW_SWR>
+ *
+ * The parser reads the numbers directly from received bytes, it does not
+ * create any String or boxed number. Fields are separated by exactly one
+ * comma and numbers cannot be longer than Arduino prints them, so a line
+ * which was corrupted on the serial line is rejected instead of being
+ * parsed into a wrong point.
+ */
+public class SweepLineParser {
+
+	/* Arduino prints unsigned long (frequency) and int (analog values) */
+	private static final int MAX_LONG_DIGITS = 10;
+	private static final int MAX_INT_DIGITS = 5;
+
+	/* Arduino prints "ovf" for floats above unsigned long, at most 5 decimals are used */
+	private static final int MAX_INTEGER_DIGITS = 10;
+	private static final int MAX_FRACTION_DIGITS = 5;
+
+	private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5 };
+
+	private byte[] buf;
+	private int pos;
+	private int end;
+	private boolean valid;
+
+	/**
+	 * It parses one sweep line and stores the point to sweep data
+	 *
+	 * @param line
+	 *            line bytes
+	 * @param length
+	 *            number of valid bytes
+	 * @param out
+	 *            sweep data where the point is added
+	 * @return false if the line is not a valid sweep line; nothing is added
+	 */
+	public boolean parse(byte[] line, int length, SweepData out) {
+		buf = line;
+		pos = 0;
+		end = length;
+		valid = true;
+
+		skipSpaces();
+		long freq = parseLong(MAX_LONG_DIGITS);
+		skipSeparator();
+		float swr = (float) parseDouble();
+		skipSeparator();
+		int fwd = (int) parseLong(MAX_INT_DIGITS);
+		skipSeparator();
+		int rev = (int) parseLong(MAX_INT_DIGITS);
+		skipSeparator();
+		float rawSWR = (float) parseDouble();
+
+		skipSpaces();
+
+		buf = null;
+
+		if (!valid || pos != end) {
+			return false;
+		}
+
+		out.add(freq, swr, fwd, rev, rawSWR);
+		return true;
+	}
+
+	/**
+	 * Skips spaces and exactly one field separator; the line is invalid
+	 * without it
+	 */
+	private void skipSeparator() {
+		skipSpaces();
+		if (pos < end && buf[pos] == ',') {
+			pos++;
+		} else {
+			valid = false;
+		}
+		skipSpaces();
+	}
+
+	private void skipSpaces() {
+		while (pos < end && (buf[pos] == ' ' || buf[pos] == '\t')) {
+			pos++;
+		}
+	}
+
+	private long parseLong(int maxDigits) {
+		boolean negative = false;
+		if (pos < end && buf[pos] == '-') {
+			negative = true;
+			pos++;
+		}
+
+		int start = pos;
+		long value = 0;
+
+		while (pos < end && buf[pos] >= '0' && buf[pos] <= '9') {
+			value = value * 10 + (buf[pos] - '0');
+			pos++;
+		}
+
+		if (pos == start || pos - start > maxDigits) {
+			valid = false;
+		}
+
+		return negative ? -value : value;
+	}
+
+	private double parseDouble() {
+		boolean negative = false;
+		if (pos < end && buf[pos] == '-') {
+			negative = true;
+			pos++;
+		}
+
+		int start = pos;
+		long mantissa = 0;
+		int fraction = 0;
+
+		while (pos < end && buf[pos] >= '0' && buf[pos] <= '9') {
+			mantissa = mantissa * 10 + (buf[pos] - '0');
+			pos++;
+		}
+
+		if (pos == start) {
+			/* Arduino prints "nan", "inf" or "ovf" for invalid numbers */
+			valid = false;
+			return 0;
+		}
+		if (pos - start > MAX_INTEGER_DIGITS) {
+			/* the mantissa must not overflow */
+			valid = false;
+			return 0;
+		}
+
+		if (pos < end && buf[pos] == '.') {
+			pos++;
+			while (pos < end && buf[pos] >= '0' && buf[pos] <= '9') {
+				if (fraction == MAX_FRACTION_DIGITS) {
+					valid = false;
+					return 0;
+				}
+				mantissa = mantissa * 10 + (buf[pos] - '0');
+				fraction++;
+				pos++;
+			}
+		}
+
+		double value = mantissa / POW10[fraction];
+		return negative ? -value : value;
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * SweepProfile
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+/**
+ * Sweep profile - accuracy vs. speed
+ *
+ * A profile sets the DDS settle time ('d' command) and the number of
+ * analog samples per point ('m' command, median of the samples) before a
+ * sweep. The commands are supported by firmware 3.3lf and newer.
+ *
+ * Most of the sweep time is the settle time; "fast scan" sweeps about ten
+ * times faster than "normal", which is the firmware default.
+ */
+public enum SweepProfile {
+	FAST("fast scan", 20, 1), NORMAL("normal", 200, 1), PRECISION("precision", 300, 16);
+
+	private final String label;
+	private final int settleTime;
+	private final int samples;
+
+	private SweepProfile(String in_label, int in_settleTime, int in_samples) {
+		label = in_label;
+		settleTime = in_settleTime;
+		samples = in_samples;
+	}
+
+	/**
+	 * @return DDS settle time in ms
+	 */
+	public int getSettleTime() {
+		return settleTime;
+	}
+
+	/**
+	 * @return analog samples per point
+	 */
+	public int getSamples() {
+		return samples;
+	}
+
+	@Override
+	public String toString() {
+		return label;
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * SweepStatistics
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+/**
+ * Resonance statistics computed while the sweep is running
+ *
+ * Points have to come in ascending frequency order. Each point is processed
+ * in O(1), the statistics are valid after each point:
+ *
+ * - minimum SWR and its frequency
+ *
+ * - lower and upper edges of the band around the minimum where SWR is below
+ * 1.5 and 2.0 (linear interpolation between points)
+ *
+ * - Q estimated from the bandwidth. It expects an antenna matched at
+ * resonance (series RLC, SWR 1:1); for SWR threshold s the bandwidth B gives
+ * Q = f0 / B * 2g / sqrt(1 - g^2), where g = (s - 1) / (s + 1).
+ */
+public class SweepStatistics {
+
+	private static final double[] SWR_THRESHOLDS = { 1.5, 2.0 };
+
+	private final double[] qFactor = new double[SWR_THRESHOLDS.length];
+
+	private boolean hasPrevious;
+	private double prevFreq;
+	private double prevSWR;
+
+	private double minSWR;
+	private double minFreq;
+
+	private final double[] lastDownCross = new double[SWR_THRESHOLDS.length];
+	private final double[] lowerEdge = new double[SWR_THRESHOLDS.length];
+	private final double[] upperEdge = new double[SWR_THRESHOLDS.length];
+
+	public SweepStatistics() {
+		for (int i = 0; i < SWR_THRESHOLDS.length; i++) {
+			double g = (SWR_THRESHOLDS[i] - 1) / (SWR_THRESHOLDS[i] + 1);
+			qFactor[i] = 2 * g / Math.sqrt(1 - g * g);
+		}
+		reset();
+	}
+
+	/**
+	 * Starts new statistics
+	 */
+	public void reset() {
+		hasPrevious = false;
+		minSWR = Double.POSITIVE_INFINITY;
+		minFreq = Double.NaN;
+
+		for (int i = 0; i < SWR_THRESHOLDS.length; i++) {
+			lastDownCross[i] = Double.NaN;
+			lowerEdge[i] = Double.NaN;
+			upperEdge[i] = Double.NaN;
+		}
+	}
+
+	/**
+	 * It adds next point of the sweep
+	 *
+	 * @param freq
+	 * @param swr
+	 */
+	public void add(double freq, double swr) {
+		for (int i = 0; hasPrevious && i < SWR_THRESHOLDS.length; i++) {
+			double threshold = SWR_THRESHOLDS[i];
+
+			if (prevSWR >= threshold && swr < threshold) {
+				lastDownCross[i] = interpolate(threshold, freq, swr);
+			} else if (prevSWR < threshold && swr >= threshold) {
+				/* the first rise above threshold behind the minimum */
+				if (minSWR < threshold && Double.isNaN(upperEdge[i])) {
+					upperEdge[i] = interpolate(threshold, freq, swr);
+				}
+			}
+		}
+
+		if (swr < minSWR) {
+			minSWR = swr;
+			minFreq = freq;
+
+			for (int i = 0; i < SWR_THRESHOLDS.length; i++) {
+				lowerEdge[i] = (swr < SWR_THRESHOLDS[i]) ? lastDownCross[i] : Double.NaN;
+				upperEdge[i] = Double.NaN;
+			}
+		}
+
+		hasPrevious = true;
+		prevFreq = freq;
+		prevSWR = swr;
+	}
+
+	private double interpolate(double threshold, double freq, double swr) {
+		return prevFreq + (threshold - prevSWR) * (freq - prevFreq) / (swr - prevSWR);
+	}
+
+	public int getThresholdCount() {
+		return SWR_THRESHOLDS.length;
+	}
+
+	public double getThreshold(int index) {
+		return SWR_THRESHOLDS[index];
+	}
+
+	/**
+	 * @return minimum SWR or NaN if no point was added
+	 */
+	public double getMinSWR() {
+		return hasPrevious ? minSWR : Double.NaN;
+	}
+
+	/**
+	 * @return frequency of minimum SWR or NaN if no point was added
+	 */
+	public double getMinFreq() {
+		return minFreq;
+	}
+
+	/**
+	 * @param index
+	 *            threshold index
+	 * @return lower band edge or NaN when it is not known (the band begins
+	 *         below the sweep start)
+	 */
+	public double getLowerEdge(int index) {
+		return lowerEdge[index];
+	}
+
+	/**
+	 * @param index
+	 *            threshold index
+	 * @return upper band edge or NaN when it is not known yet
+	 */
+	public double getUpperEdge(int index) {
+		return upperEdge[index];
+	}
+
+	/**
+	 * @param index
+	 *            threshold index
+	 * @return bandwidth or NaN when one of the edges is not known
+	 */
+	public double getBandwidth(int index) {
+		return upperEdge[index] - lowerEdge[index];
+	}
+
+	/**
+	 * @param index
+	 *            threshold index
+	 * @return Q estimated from the bandwidth or NaN
+	 */
+	public double getQ(int index) {
+		return qFactor[index] * minFreq / getBandwidth(index);
+	}
+}
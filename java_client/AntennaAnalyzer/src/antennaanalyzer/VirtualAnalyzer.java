@@ -0,0 +1,874 @@
+/*
+ * VirtualAnalyzer
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Simulated Arduino Antenna Analyzer
+ *
+ * It runs in the client process and implements the same commands as
+ * interpreter() in the firmware 3.5lf (a, b, c, d, f, m, n, r, s, u, x, ?,
+ * h, v and sweep abort by any received byte) including the "#OK#"
+ * confirmation and the boot output. It can be used instead of a serial
+ * port for testing and load-testing of the client.
+ *
+ * The antenna is a series RLC circuit; SWR is computed from its impedance
+ * against 50 Ohm. FWD is constant, REV is FWD * |reflection coefficient|
+ * and RAW_SWR is computed from them like measure_swr() does (without
+ * calibration, so SWR = RAW_SWR).
+ *
+ * Each point (sweep point, 'c'/'f' measurement) waits the point latency;
+ * zero latency means the points are sent as fast as the client reads them.
+ * The settle time ('d') and the baud rate ('u') are only stored. The boot
+ * time simulates the start of Arduino after the reset by opening the port;
+ * commands received during the start are processed after it.
+ *
+ * Port name: virtual[:latency=US][:boot=MS][:r=OHM][:l=HENRY][:c=FARAD],
+ * e.g. virtual:latency=0:r=40:l=10e-6:c=50e-12 (resonance 7.1 MHz, SWR
+ * 1.25).
+ */
+public class VirtualAnalyzer implements AnalyzerLink, Runnable {
+
+	public static final String PORT_PREFIX = "virtual";
+
+	private static final String VERSION = "Version: 3.5lf";
+
+	/* how long a read blocks when nothing is received (the same as serial ports) */
+	private static final int READ_TIMEOUT_MS = 100;
+
+	private static final int COMMAND_BUFFER_SIZE = 4096;
+	private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+	/* device output is collected to chunks, the longest line has to fit */
+	private static final int CHUNK_SIZE = 8 * 1024;
+	private static final int MAX_LINE_LENGTH = 128;
+
+	private static final double REFERENCE_OHM = 50.0;
+	private static final int FWD_LEVEL = 500;
+	private static final int OFFSET_FORWARD = 12;
+	private static final int OFFSET_REVERSE = 13;
+	private static final int CALIBRATION_SAMPLE_SZ = 16;
+	private static final long MAX_FREQ = 30000000L;
+	private static final int MAX_SETTLE_TIME = 2000;
+
+	private static final byte ABORT_CHAR = '!';
+
+	private static final long[] POW10 = { 1L, 10L, 100L, 1000L, 10000L, 100000L };
+
+	private final String name;
+
+	/* antenna model */
+	private volatile double resistance = 40.0;
+	private volatile double inductance = 10e-6;
+	private volatile double capacitance = 50e-12;
+	private volatile long pointLatencyNanos = 0;
+	private volatile long bootNanos = 0;
+
+	/* firmware state - used only by the device thread */
+	private long freqStart;
+	private long freqStop;
+	private long inputNumber;
+	private int numSteps;
+	private int settleTime;
+	private int numSamples;
+	private long baudRate;
+
+	/* the last measurement */
+	private int measFwd;
+	private int measRev;
+	private float measRawSWR;
+	private float measSWR;
+
+	private ByteRing commands;
+	private final byte[] received = new byte[64];
+	private int receivedPos = 0;
+	private int receivedLength = 0;
+	private ByteRing output;
+	private final byte[] chunk = new byte[CHUNK_SIZE];
+	private int chunkLength = 0;
+	private final byte[] digits = new byte[20];
+	private final SweepFrameCodec frameCodec = new SweepFrameCodec();
+	private Thread thread;
+
+	private final InputStream inputStream = new InputStream() {
+		private final byte[] one = new byte[1];
+
+		@Override
+		public int read() throws IOException {
+			int count;
+
+			do {
+				count = read(one, 0, 1);
+			} while (count == 0);
+
+			return (count < 0) ? -1 : one[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			try {
+				return output.read(b, off, len, TimeUnit.MILLISECONDS.toNanos(READ_TIMEOUT_MS));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Read was interrupted");
+			}
+		}
+	};
+
+	private final OutputStream outputStream = new OutputStream() {
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			try {
+				if (!commands.write(b, off, len)) {
+					throw new IOException("Port is closed");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Write was interrupted");
+			}
+		}
+	};
+
+	/**
+	 * Creates the analyzer with default antenna and zero latency
+	 *
+	 * @param in_name
+	 *            port name
+	 */
+	public VirtualAnalyzer(String in_name) {
+		name = in_name;
+	}
+
+	/**
+	 * Creates the analyzer from the port name
+	 *
+	 * @param port
+	 *            virtual[:latency=US][:boot=MS][:r=OHM][:l=HENRY][:c=FARAD]
+	 * @return analyzer which is not opened yet
+	 * @throws IllegalArgumentException
+	 *             unknown parameter or invalid value
+	 */
+	public static VirtualAnalyzer create(String port) {
+		VirtualAnalyzer analyzer = new VirtualAnalyzer(port);
+		String[] items = port.split(":");
+
+		if (!items[0].equals(PORT_PREFIX)) {
+			throw new IllegalArgumentException("Not a virtual analyzer: " + port);
+		}
+
+		try {
+			for (int i = 1; i < items.length; i++) {
+				String[] param = items[i].split("=", 2);
+
+				if (param.length != 2) {
+					throw new IllegalArgumentException("Invalid parameter " + items[i]);
+				}
+
+				double value = Double.parseDouble(param[1]);
+
+				switch (param[0]) {
+				case "latency":
+					analyzer.setPointLatency((long) (value * 1000));
+					break;
+				case "boot":
+					analyzer.setBootTime((long) (value * 1000000));
+					break;
+				case "r":
+					analyzer.setAntenna(value, analyzer.inductance, analyzer.capacitance);
+					break;
+				case "l":
+					analyzer.setAntenna(analyzer.resistance, value, analyzer.capacitance);
+					break;
+				case "c":
+					analyzer.setAntenna(analyzer.resistance, analyzer.inductance, value);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown parameter " + param[0]);
+				}
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number in " + port, e);
+		}
+		return analyzer;
+	}
+
+	/**
+	 * It sets the series RLC antenna
+	 *
+	 * @param r
+	 *            in Ohm
+	 * @param l
+	 *            in H
+	 * @param c
+	 *            in F
+	 */
+	public void setAntenna(double r, double l, double c) {
+		if (r < 0 || l <= 0 || c <= 0) {
+			throw new IllegalArgumentException("Invalid antenna R=" + r + " L=" + l + " C=" + c);
+		}
+		resistance = r;
+		inductance = l;
+		capacitance = c;
+	}
+
+	/**
+	 * It sets the wait time of each point
+	 *
+	 * @param nanos
+	 *            0 - no wait
+	 */
+	public void setPointLatency(long nanos) {
+		if (nanos < 0) {
+			throw new IllegalArgumentException("Invalid latency " + nanos);
+		}
+		pointLatencyNanos = nanos;
+	}
+
+	/**
+	 * It sets the start time after open; Arduino takes about 3 s
+	 *
+	 * @param nanos
+	 *            0 - no wait
+	 */
+	public void setBootTime(long nanos) {
+		if (nanos < 0) {
+			throw new IllegalArgumentException("Invalid boot time " + nanos);
+		}
+		bootNanos = nanos;
+	}
+
+	/**
+	 * @return resonance frequency of the antenna in Hz
+	 */
+	public double getResonance() {
+		return 1.0 / (2 * Math.PI * Math.sqrt(inductance * capacitance));
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * It starts the device; it behaves like Arduino after reset
+	 */
+	@Override
+	public synchronized boolean open() {
+		if (thread != null) {
+			return false;
+		}
+
+		commands = new ByteRing(COMMAND_BUFFER_SIZE);
+		output = new ByteRing(OUTPUT_BUFFER_SIZE);
+
+		thread = new Thread(this, "Virtual analyzer " + name);
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+
+	@Override
+	public synchronized boolean close() {
+		if (thread == null) {
+			return false;
+		}
+
+		commands.close();
+		output.close();
+		thread.interrupt();
+
+		try {
+			thread.join(READ_TIMEOUT_MS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+		return true;
+	}
+
+	@Override
+	public void setBaudRate(int rate) {
+		// there is no wire
+	}
+
+	@Override
+	public void keepAnalyzerRunning() {
+		// the analyzer lives as long as the link
+	}
+
+	@Override
+	public InputStream getInputStream() {
+		return inputStream;
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		return outputStream;
+	}
+
+	/**
+	 * Device thread - setup() and loop()
+	 */
+	@Override
+	public void run() {
+		freqStart = 1000000L;
+		freqStop = MAX_FREQ;
+		inputNumber = 0;
+		numSteps = 100;
+		settleTime = 200;
+		numSamples = 1;
+		baudRate = 57600;
+		chunkLength = 0;
+		receivedPos = 0;
+		receivedLength = 0;
+
+		try {
+			waitNanos(bootNanos);
+			calcAnalogInputOffsets();
+			endOfCommand();
+
+			while (true) {
+				if (receivedPos == receivedLength) {
+					int count = commands.read(received, 0, received.length, Long.MAX_VALUE);
+
+					if (count < 0) {
+						return;
+					}
+					receivedPos = 0;
+					receivedLength = count;
+				}
+
+				interpreter((char) received[receivedPos++]);
+			}
+		} catch (InterruptedException e) {
+			// the port was closed
+		}
+	}
+
+	/**
+	 * The same as interpreter() in the firmware
+	 *
+	 * @param rxd
+	 * @throws InterruptedException
+	 */
+	private void interpreter(char rxd) throws InterruptedException {
+		switch (Character.toLowerCase(rxd)) {
+		case '0':
+		case '1':
+		case '2':
+		case '3':
+		case '4':
+		case '5':
+		case '6':
+		case '7':
+		case '8':
+		case '9':
+			/* unsigned long in Arduino */
+			inputNumber = (inputNumber * 10 + (rxd - '0')) & 0xFFFFFFFFL;
+			break;
+		case 'a':
+			freqStart = validateInputFreq(inputNumber);
+			inputNumber = 0;
+			endOfCommand();
+			break;
+		case 'b':
+			freqStop = validateInputFreq(inputNumber);
+			inputNumber = 0;
+			endOfCommand();
+			break;
+		case 'c':
+			freqStart = validateInputFreq(inputNumber);
+			frequencySweep(freqStart);
+			inputNumber = 0;
+			endOfCommand();
+			break;
+		case 'd':
+			settleTime = (int) Math.min(inputNumber, MAX_SETTLE_TIME);
+			inputNumber = 0;
+			endOfCommand();
+			break;
+		case 'f':
+			fullBandCalibration(validateInputFreq(inputNumber));
+			inputNumber = 0;
+			endOfCommand();
+			break;
+		case 'm':
+			numSamples = (int) Math.max(1, Math.min(inputNumber, CALIBRATION_SAMPLE_SZ));
+			inputNumber = 0;
+			endOfCommand();
+			break;
+		case 'n':
+			/* unsigned int in Arduino */
+			numSteps = (int) (inputNumber & 0xFFFF);
+			inputNumber = 0;
+			endOfCommand();
+			break;
+		case 'u':
+			changeBaudRate(inputNumber);
+			inputNumber = 0;
+			break;
+		case 's':
+			performSweep();
+			endOfCommand();
+			break;
+		case 'x':
+			performSweepBinary();
+			endOfCommand();
+			break;
+		case 'r':
+			calcAnalogInputOffsets();
+			endOfCommand();
+			break;
+		case '?':
+			sweepInfo();
+			endOfCommand();
+			break;
+		case 'h':
+			help();
+			endOfCommand();
+			break;
+		case 'v':
+			println(VERSION);
+			endOfCommand();
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * The same as sweep_aborted() in the firmware - any received byte stops
+	 * the sweep, the abort character is consumed
+	 *
+	 * @return true if the sweep has to stop
+	 * @throws InterruptedException
+	 */
+	private boolean sweepAborted() throws InterruptedException {
+		if (receivedPos == receivedLength) {
+			int count = commands.read(received, 0, received.length, 0);
+
+			if (count <= 0) {
+				return false;
+			}
+			receivedPos = 0;
+			receivedLength = count;
+		}
+
+		if (received[receivedPos] == ABORT_CHAR) {
+			receivedPos++;
+		}
+		return true;
+	}
+
+	private static long validateInputFreq(long freq) {
+		if (freq <= 0) {
+			return 1;
+		}
+		return Math.min(freq, MAX_FREQ);
+	}
+
+	private void endOfCommand() throws InterruptedException {
+		println("#OK#");
+		flushOutput();
+	}
+
+	/**
+	 * Baud rate change is confirmed at once - there is no wire which could
+	 * fail
+	 *
+	 * @param rate
+	 * @throws InterruptedException
+	 */
+	private void changeBaudRate(long rate) throws InterruptedException {
+		if (rate != 57600 && rate != 115200 && rate != 250000 && rate != 500000 && rate != 1000000) {
+			rate = baudRate;
+		}
+		print("Baud: ");
+		printLong(rate);
+		println();
+		endOfCommand();
+		baudRate = rate;
+	}
+
+	private void sweepInfo() throws InterruptedException {
+		println("--- Sweep info ---");
+		print("Start Freq:\t\t");
+		printLong(freqStart);
+		println();
+		print("Stop Freq:\t\t");
+		printLong(freqStop);
+		println();
+		print("Num Steps:\t\t");
+		printLong(numSteps);
+		println();
+		print("Settle Time:\t\t");
+		printLong(settleTime);
+		println();
+		print("Num Samples:\t\t");
+		printLong(numSamples);
+		println();
+		print("Analog Offset FWD:\t");
+		printLong(OFFSET_FORWARD);
+		println();
+		print("Analog Offset REV:\t");
+		printLong(OFFSET_REVERSE);
+		println();
+	}
+
+	private void help() throws InterruptedException {
+		println("---- Commands may be lower or upper case ----");
+		println("letter\tdescription\t\texample\t\tresult");
+		println("'a'\tset start frequency\t6000000a\t6.000 Mhz");
+		println("'b'\tset end frequency\t8000000b\t8.000 Mhz");
+		println("'c'\tsweep const. frequency\t7032000c\t7.032 Mhz");
+		println("'d'\tset DDS settle time\t20d\t\t20 ms");
+		println("'f'\tcalibration \t\t300f\t\tusing 300ohm dummy load");
+		println("'m'\tset analog samples\t8m\t\tmedian of 8 samples");
+		println("'n'\tset number of steps\t100n\t\t100 steps");
+		println("'u'\tchange baud rate\t500000u\t\tconfirm by 'v' within 1s");
+		println("'s'\tperform sweep from frequency a to b with n steps");
+		println("'x'\tthe same as 's' but binary output");
+		println("'r'\tre-calibration of analog inputs");
+		println("'?'\tsweep info");
+		println("'h'\thelp");
+		println("'v'\tsoftware version");
+		println("'!'\tabort running sweep");
+	}
+
+	private void calcAnalogInputOffsets() throws InterruptedException {
+		for (int i = 0; i < CALIBRATION_SAMPLE_SZ; i++) {
+			printLong(OFFSET_FORWARD);
+			print(", ");
+			printLong(OFFSET_REVERSE);
+			println();
+		}
+	}
+
+	private void fullBandCalibration(long resistor) throws InterruptedException {
+		for (long freq = 500000L; freq <= MAX_FREQ; freq += 1000000L) {
+			printFixed(resistor / 50.0, 2);
+			print(", ");
+			frequencySweep(freq);
+		}
+	}
+
+	/**
+	 * One frequency - the model has no noise, the median of the samples is
+	 * the raw SWR
+	 *
+	 * @param freq
+	 * @throws InterruptedException
+	 */
+	private void frequencySweep(long freq) throws InterruptedException {
+		pointLatency();
+		measure(freq);
+		printLong(freq);
+		print(", ");
+		printFixed(measRawSWR, 5);
+		println();
+	}
+
+	private void performSweep() throws InterruptedException {
+		long freqStep = (numSteps == 0) ? 0 : (freqStop - freqStart) / numSteps;
+
+		for (int i = 0; i <= numSteps && !sweepAborted(); i++) {
+			long freq = freqStart + i * freqStep;
+
+			pointLatency();
+			measure(freq);
+
+			printLong(freq);
+			print(", ");
+			printFixed(measSWR, 2);
+			print(", ");
+			printLong(measFwd);
+			print(", ");
+			printLong(measRev);
+			print(", ");
+			printFixed(measRawSWR, 2);
+			println();
+		}
+	}
+
+	private void performSweepBinary() throws InterruptedException {
+		long freqStep = (numSteps == 0) ? 0 : (freqStop - freqStart) / numSteps;
+
+		print(SweepFrameCodec.HEADER);
+		printLong(freqStart);
+		print(",");
+		printLong(freqStep);
+		print(",");
+		printLong(numSteps + 1);
+		println();
+
+		for (int i = 0; i <= numSteps && !sweepAborted(); i++) {
+			pointLatency();
+			measure(freqStart + i * freqStep);
+
+			ensureLine();
+			chunkLength += frameCodec.encode(i, measSWR, measFwd, measRev, measRawSWR, chunk, chunkLength);
+		}
+	}
+
+	/**
+	 * The same as measure_swr() in the firmware without calibration
+	 *
+	 * @param freq
+	 */
+	private void measure(long freq) {
+		double gamma = 1.0;
+
+		if (freq > 0) {
+			double omega = 2 * Math.PI * freq;
+			double x = omega * inductance - 1.0 / (omega * capacitance);
+			double r = resistance;
+
+			gamma = Math.sqrt(((r - REFERENCE_OHM) * (r - REFERENCE_OHM) + x * x)
+					/ ((r + REFERENCE_OHM) * (r + REFERENCE_OHM) + x * x));
+		}
+
+		measFwd = FWD_LEVEL;
+		measRev = (int) Math.round(FWD_LEVEL * gamma);
+
+		if (measRev >= measFwd) {
+			measRev = measFwd - 1;
+		}
+		if (measRev < 1) {
+			measRev = 1;
+		}
+
+		measRawSWR = (float) (measFwd + measRev) / (float) (measFwd - measRev);
+
+		if (measRawSWR >= 29.0f) {
+			measRawSWR = 28.999f;
+		}
+		if (measRawSWR < 1) {
+			measRawSWR = 1;
+		}
+
+		measSWR = (measRawSWR < 1.01f) ? 1.0f : measRawSWR;
+	}
+
+	private void pointLatency() throws InterruptedException {
+		long latency = pointLatencyNanos;
+
+		if (latency == 0) {
+			return;
+		}
+
+		/* the client gets the previous points before the wait */
+		flushOutput();
+		waitNanos(latency);
+	}
+
+	private static void waitNanos(long nanos) throws InterruptedException {
+		long deadline = System.nanoTime() + nanos;
+		long remaining;
+
+		while ((remaining = deadline - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(remaining);
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+	}
+
+	/*
+	 * Output - Serial.print() equivalents. The text is collected in the chunk
+	 * and sent to the client by flushOutput().
+	 */
+
+	private void ensureLine() throws InterruptedException {
+		if (chunkLength > CHUNK_SIZE - MAX_LINE_LENGTH) {
+			flushOutput();
+		}
+	}
+
+	private void flushOutput() throws InterruptedException {
+		if (chunkLength > 0) {
+			boolean written = output.write(chunk, 0, chunkLength);
+
+			chunkLength = 0;
+			if (!written) {
+				throw new InterruptedException("Port was closed");
+			}
+		}
+	}
+
+	private void print(String text) throws InterruptedException {
+		ensureLine();
+		for (int i = 0; i < text.length(); i++) {
+			chunk[chunkLength++] = (byte) text.charAt(i);
+		}
+	}
+
+	private void println(String text) throws InterruptedException {
+		print(text);
+		println();
+	}
+
+	private void println() throws InterruptedException {
+		ensureLine();
+		chunk[chunkLength++] = '\r';
+		chunk[chunkLength++] = '\n';
+	}
+
+	private void printLong(long value) throws InterruptedException {
+		ensureLine();
+
+		if (value < 0) {
+			chunk[chunkLength++] = '-';
+			value = -value;
+		}
+
+		int count = 0;
+
+		do {
+			digits[count++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+
+		while (count > 0) {
+			chunk[chunkLength++] = digits[--count];
+		}
+	}
+
+	private void printFixed(double value, int decimals) throws InterruptedException {
+		long scaled = Math.round(value * POW10[decimals]);
+
+		printLong(scaled / POW10[decimals]);
+		chunk[chunkLength++] = '.';
+
+		long fraction = scaled % POW10[decimals];
+
+		for (int i = decimals - 1; i >= 0; i--) {
+			chunk[chunkLength++] = (byte) ('0' + (fraction / POW10[i]) % 10);
+		}
+	}
+
+	/**
+	 * Bounded byte queue between the client and the device thread
+	 */
+	private static class ByteRing {
+		private final byte[] data;
+		private int readPos = 0;
+		private int size = 0;
+		private boolean closed = false;
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition notEmpty = lock.newCondition();
+		private final Condition notFull = lock.newCondition();
+
+		ByteRing(int capacity) {
+			data = new byte[capacity];
+		}
+
+		/**
+		 * @return number of read bytes, 0 after timeout, -1 when closed
+		 */
+		int read(byte[] b, int off, int len, long timeoutNanos) throws InterruptedException {
+			lock.lockInterruptibly();
+			try {
+				while (size == 0) {
+					if (closed) {
+						return -1;
+					}
+					if (timeoutNanos <= 0) {
+						return 0;
+					}
+					timeoutNanos = notEmpty.awaitNanos(timeoutNanos);
+				}
+
+				int count = Math.min(len, size);
+				int first = Math.min(count, data.length - readPos);
+
+				System.arraycopy(data, readPos, b, off, first);
+				System.arraycopy(data, 0, b, off + first, count - first);
+
+				readPos = (readPos + count) % data.length;
+				size -= count;
+				notFull.signal();
+				return count;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * @return false when closed
+		 */
+		boolean write(byte[] b, int off, int len) throws InterruptedException {
+			lock.lockInterruptibly();
+			try {
+				while (len > 0) {
+					while (size == data.length) {
+						if (closed) {
+							return false;
+						}
+						notFull.await();
+					}
+					if (closed) {
+						return false;
+					}
+
+					int writePos = (readPos + size) % data.length;
+					int count = Math.min(len, Math.min(data.length - size, data.length - writePos));
+
+					System.arraycopy(b, off, data, writePos, count);
+					size += count;
+					off += count;
+					len -= count;
+					notEmpty.signal();
+				}
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void close() {
+			lock.lock();
+			try {
+				closed = true;
+				notEmpty.signalAll();
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * AnalyzerDiscoveryTest
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class AnalyzerDiscoveryTest {
+
+	private final AnalyzerDiscovery discovery = new AnalyzerDiscovery(57600, 500);
+
+	@After
+	public void stop() {
+		discovery.stop();
+	}
+
+	@Test
+	public void findsRunningAnalyzer() throws InterruptedException {
+		Map<String, String> found = discovery.probePorts(Arrays.asList("virtual"));
+
+		assertEquals("Version: 3.5lf", found.get("virtual"));
+	}
+
+	@Test
+	public void waitsForStartAfterReset() throws InterruptedException {
+		/* the probe is sent while the analyzer starts, it answers after the start */
+		Map<String, String> found = discovery.probePorts(Arrays.asList("virtual:boot=2000"));
+
+		assertEquals("Version: 3.5lf", found.get("virtual:boot=2000"));
+	}
+
+	@Test
+	public void waitForReadyReportsStart() throws Exception {
+		ArduinoAnalyzerCom arduino = new ArduinoAnalyzerCom(57600, new MonitorLog(100));
+
+		arduino.openPort("virtual:boot=1000");
+		try {
+			assertFalse(arduino.waitForReady(5000));
+			assertEquals("Version: 3.5lf", arduino.getFirmwareVersion(500));
+		} finally {
+			arduino.closePort();
+		}
+	}
+}
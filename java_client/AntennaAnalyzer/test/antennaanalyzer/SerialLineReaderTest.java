@@ -0,0 +1,140 @@
+/*
+ * SerialLineReaderTest
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SerialLineReaderTest {
+
+	/* more lines than the line pool has */
+	private static final int POOL_CYCLE = 2000;
+
+	/**
+	 * Stream which returns chunks handed over by the test; a chunk can be
+	 * put only after the reader took the previous one
+	 */
+	private static class ChunkStream extends InputStream {
+		private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<byte[]>(1);
+		private byte[] chunk = new byte[0];
+		private int pos = 0;
+
+		void feed(String text) throws InterruptedException {
+			chunks.put(text.getBytes(StandardCharsets.US_ASCII));
+		}
+
+		/* the previous chunks are split to lines when it returns */
+		void sync() throws InterruptedException {
+			chunks.put(new byte[0]);
+			chunks.put(new byte[0]);
+		}
+
+		@Override
+		public int read() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws InterruptedIOException {
+			try {
+				if (pos == chunk.length) {
+					chunk = chunks.take();
+					pos = 0;
+				}
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+
+			/* the reader asks for less at the end of its ring buffer */
+			int count = Math.min(len, chunk.length - pos);
+			System.arraycopy(chunk, pos, b, off, count);
+			pos += count;
+			return count;
+		}
+	}
+
+	private final ChunkStream stream = new ChunkStream();
+	private final SerialLineReader reader = new SerialLineReader(stream);
+
+	@Before
+	public void start() {
+		reader.start("Test reader");
+	}
+
+	@After
+	public void stop() {
+		reader.stop(1000);
+	}
+
+	@Test
+	public void splitsLines() throws Exception {
+		stream.feed("12, 13\r\n#O");
+		stream.feed("K#\r\n\n");
+
+		assertEquals("12, 13", reader.nextLine(1000));
+		assertEquals("#OK#", reader.nextLine(1000));
+		assertEquals("", reader.nextLine(1000));
+	}
+
+	@Test
+	public void reusesLinesAfterClear() throws Exception {
+		stream.feed("Version: 3.5lf\n#OK#\nlate reply\n");
+		stream.sync();
+
+		reader.clear();
+
+		for (int i = 0; i < POOL_CYCLE; i++) {
+			stream.feed(i + "\n");
+			assertEquals(String.valueOf(i), reader.nextLine(1000));
+		}
+	}
+
+	@Test
+	public void reusesRawLines() throws Exception {
+		for (int i = 0; i < POOL_CYCLE; i++) {
+			stream.feed("line " + i + "\n");
+
+			SerialLineReader.Line line = reader.nextRawLine(1000);
+			assertTrue(line.equalsText("line " + i));
+			reader.recycle(line);
+		}
+	}
+
+	@Test(expected = TimeoutException.class)
+	public void timesOutWithoutLine() throws Exception {
+		stream.feed("no line end");
+		reader.nextLine(50);
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * SweepArchiveTest
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SweepArchiveTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private String name() {
+		return new File(folder.getRoot(), "archive").getPath();
+	}
+
+	private static SweepData sweep(long startFreq, int points) {
+		SweepData data = new SweepData();
+
+		for (int index = 0; index < points; index++) {
+			data.add(startFreq + index * 1000, 1.0f + index / 10.0f, 500, index, 1.5f);
+		}
+		return data;
+	}
+
+	private static void truncate(String file, long length) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(length);
+		}
+	}
+
+	@Test
+	public void readsAppendedSweeps() throws IOException {
+		SweepArchive archive = new SweepArchive(name());
+		SweepData data = new SweepData();
+
+		archive.append(1000, "COM3", sweep(7000000, 11));
+		archive.append(2000, "COM4", sweep(14000000, 5));
+		archive.close();
+
+		archive = new SweepArchive(name());
+		try {
+			assertEquals(2, archive.size());
+			assertEquals("COM4", archive.getDevice(1));
+			assertEquals(14004000, archive.getStopFreq(1));
+
+			archive.read(0, data);
+			assertEquals(11, data.size());
+			assertEquals(7010000, data.getFreq(10));
+			assertEquals(2.0f, data.getSWR(10), 1e-6f);
+			assertEquals(10, data.getRev(10));
+
+			archive.read(0, 7002000, 7004500, data);
+			assertEquals(3, data.size());
+			assertEquals(7002000, data.getFreq(0));
+		} finally {
+			archive.close();
+		}
+	}
+
+	@Test
+	public void scansTimeAndFrequencyRange() throws IOException {
+		SweepArchive archive = new SweepArchive(name());
+		final List<String> found = new ArrayList<String>();
+
+		archive.append(1000, "a", sweep(7000000, 11));
+		archive.append(2000, "b", sweep(14000000, 11));
+		archive.append(3000, "c", sweep(7000000, 11));
+		archive.append(4000, "d", sweep(7000000, 11));
+
+		try {
+			archive.scan(1500, 4000, 7005000, 7020000, new SweepData(), new ArchiveScanListener() {
+				@Override
+				public void sweepFound(int index, long timestamp, String device, SweepData data) {
+					found.add(index + " " + timestamp + " " + device + " " + data.size());
+				}
+			});
+		} finally {
+			archive.close();
+		}
+
+		assertEquals(1, found.size());
+		assertEquals("2 3000 c 6", found.get(0));
+	}
+
+	@Test
+	public void dropsRecordsWithMissingData() throws IOException {
+		SweepArchive archive = new SweepArchive(name());
+
+		archive.append(1000, "a", sweep(7000000, 11));
+		archive.append(2000, "b", sweep(7000000, 11));
+		archive.close();
+
+		/* the index record was written, its data were lost */
+		truncate(name() + ".dat", new File(name() + ".dat").length() - 1);
+
+		archive = new SweepArchive(name());
+		try {
+			assertEquals(1, archive.size());
+
+			archive.append(3000, "c", sweep(7000000, 3));
+			assertEquals(2, archive.size());
+			assertEquals("c", archive.getDevice(1));
+		} finally {
+			archive.close();
+		}
+	}
+
+	@Test
+	public void cutsDeviceNameBeforeCharacter() throws IOException {
+		StringBuilder ascii = new StringBuilder();
+
+		for (int i = 0; i < 39; i++) {
+			ascii.append('x');
+		}
+
+		SweepArchive archive = new SweepArchive(name());
+		try {
+			/* 2-byte character at bytes 39 and 40 */
+			archive.append(1000, ascii + "\u017e", sweep(7000000, 1));
+			/* 3-byte characters, 13 of them fit */
+			archive.append(2000, "\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac",
+					sweep(7000000, 1));
+
+			assertEquals(ascii.toString(), archive.getDevice(0));
+			assertEquals("\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac", archive.getDevice(1));
+		} finally {
+			archive.close();
+		}
+	}
+
+	@Test
+	public void dropsRecordsOutOfOrder() throws IOException {
+		SweepArchive archive = new SweepArchive(name());
+
+		archive.append(1000, "a", sweep(7000000, 11));
+		archive.append(2000, "b", sweep(7000000, 11));
+		archive.close();
+
+		/* timestamp of the second record goes back */
+		try (RandomAccessFile raf = new RandomAccessFile(name() + ".idx", "rw")) {
+			raf.seek(8 + 80);
+			raf.writeLong(500);
+		}
+
+		archive = new SweepArchive(name());
+		try {
+			assertEquals(1, archive.size());
+			assertEquals(8 + 11 * 24, new File(name() + ".dat").length());
+		} finally {
+			archive.close();
+		}
+	}
+
+	@Test
+	public void dropsIncompleteRecord() throws IOException {
+		SweepArchive archive = new SweepArchive(name());
+
+		archive.append(1000, "a", sweep(7000000, 11));
+		archive.append(2000, "b", sweep(7000000, 11));
+		archive.close();
+
+		truncate(name() + ".idx", new File(name() + ".idx").length() - 1);
+
+		archive = new SweepArchive(name());
+		try {
+			assertEquals(1, archive.size());
+			assertEquals(8 + 11 * 24, new File(name() + ".dat").length());
+		} finally {
+			archive.close();
+		}
+	}
+}
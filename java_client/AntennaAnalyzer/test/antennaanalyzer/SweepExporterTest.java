@@ -0,0 +1,105 @@
+/*
+ * SweepExporterTest
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SweepExporterTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final SweepExporter exporter = new SweepExporter();
+
+	private static SweepData sweep() {
+		SweepData data = new SweepData();
+
+		data.add(7000000, 1.25f, 512, 57, 1.234f);
+		data.add(7100000, 2.5f, 498, 120, 2.007f);
+		data.add(7200000, 28.99f, 480, 463, 28.999f);
+		return data;
+	}
+
+	private List<String> export(SweepData data) throws IOException {
+		File file = folder.newFile("sweep.csv");
+
+		exporter.writeCSV(file.getPath(), data);
+		return Files.readAllLines(file.toPath(), StandardCharsets.US_ASCII);
+	}
+
+	@Test
+	public void exportReproducesSweep() throws IOException {
+		SweepData data = sweep();
+		List<String> lines = export(data);
+
+		assertEquals("Frequence_HZ,SWR,FWD,REV,RAW_SWR", lines.get(0));
+		assertEquals(data.size() + 1, lines.size());
+
+		for (int index = 0; index < data.size(); index++) {
+			String[] columns = lines.get(index + 1).split(",");
+
+			assertEquals(data.getFreq(index), Long.parseLong(columns[0]));
+			assertEquals(data.getSWR(index), Float.parseFloat(columns[1]), 0.0f);
+			assertEquals(data.getFwd(index), Integer.parseInt(columns[2]));
+			assertEquals(data.getRev(index), Integer.parseInt(columns[3]));
+			assertEquals(data.getRawSWR(index), Float.parseFloat(columns[4]), 0.0f);
+		}
+	}
+
+	@Test
+	public void formatsRawSWRWithThreeDecimals() throws IOException {
+		List<String> lines = export(sweep());
+
+		assertEquals("7000000,1.25,512,57,1.234", lines.get(1));
+		assertEquals("7100000,2.50,498,120,2.007", lines.get(2));
+	}
+
+	@Test
+	public void prefixesSeries() throws IOException {
+		File file = folder.newFile("series.csv");
+		Map<String, SweepData> series = new LinkedHashMap<String, SweepData>();
+
+		series.put("VSWR", sweep());
+		series.put("empty", new SweepData());
+		exporter.writeCSV(file.getPath(), series);
+
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.US_ASCII);
+
+		assertEquals("Serie,Frequence_HZ,SWR,FWD,REV,RAW_SWR", lines.get(0));
+		assertEquals(4, lines.size());
+		assertEquals("VSWR,7200000,28.99,480,463,28.999", lines.get(3));
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * SweepFrameCodecTest
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class SweepFrameCodecTest {
+
+	private final SweepFrameCodec encoder = new SweepFrameCodec();
+	private final SweepFrameCodec decoder = new SweepFrameCodec();
+	private final byte[] frame = new byte[SweepFrameCodec.MAX_ENCODED_SIZE];
+	private final SweepData data = new SweepData();
+
+	/* encoded frame without '\n' */
+	private int encode(int seq, float swr, int fwd, int rev, float rawSWR) {
+		return encoder.encode(seq, swr, fwd, rev, rawSWR, frame, 0) - 1;
+	}
+
+	private void assertDecodeFails(int length, String message) {
+		try {
+			decoder.decode(frame, length, data);
+			fail("Frame was decoded");
+		} catch (IOException e) {
+			assertEquals(message, e.getMessage());
+		}
+	}
+
+	@Test
+	public void parsesHeader() throws IOException {
+		decoder.startSweep("#BIN 7000000,2000,101");
+
+		assertEquals(101, decoder.getPoints());
+		assertEquals(0, decoder.getDecodedPoints());
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsWrongHeader() throws IOException {
+		decoder.startSweep("#BIN 7000000,2000");
+	}
+
+	@Test
+	public void decodesEncodedFrames() throws IOException {
+		decoder.startSweep("#BIN 7000000,2000,3");
+
+		for (int seq = 0; seq < 3; seq++) {
+			int length = encode(seq, 1.5f + seq, 500 - seq, -40, 1.25f);
+
+			assertEquals('\n', frame[length]);
+			decoder.decode(frame, length, data);
+		}
+
+		assertEquals(3, decoder.getDecodedPoints());
+		assertEquals(7004000, data.getFreq(2));
+		assertEquals(3.5f, data.getSWR(2), 1e-6f);
+		assertEquals(498, data.getFwd(2));
+		assertEquals(-40, data.getRev(2));
+		assertEquals(1.25f, data.getRawSWR(2), 1e-6f);
+	}
+
+	@Test
+	public void escapesLineTerminators() throws IOException {
+		/* seq 10 = '\n', SWR 0.13 = '\r', fwd 27 = ESC */
+		int length = encode(10, 0.13f, 27, 0, 1.0f);
+
+		for (int i = 0; i < length; i++) {
+			assertTrue(frame[i] != '\n' && frame[i] != '\r');
+		}
+		assertTrue(length > SweepFrameCodec.FRAME_SIZE);
+
+		decoder.startSweep("#BIN 0,1,11");
+		for (int seq = 0; seq < 10; seq++) {
+			decoder.decode(frame, encoder.encode(seq, 1.0f, 0, 0, 1.0f, frame, 0) - 1, data);
+		}
+		length = encode(10, 0.13f, 27, 0, 1.0f);
+		decoder.decode(frame, length, data);
+
+		assertEquals(10, data.getFreq(10));
+		assertEquals(0.13f, data.getSWR(10), 1e-6f);
+		assertEquals(27, data.getFwd(10));
+	}
+
+	@Test
+	public void detectsDamagedFrames() throws IOException {
+		decoder.startSweep("#BIN 0,1,2");
+		int length = encode(0, 1.5f, 1, 2, 1.5f);
+
+		frame[2] ^= 0x01;
+		assertDecodeFails(length, "CRC error in sweep frame 0");
+
+		assertDecodeFails(length - 1, "Sweep frame 0 is too short");
+
+		Arrays.fill(frame, length, length + 3, (byte) 1);
+		assertDecodeFails(length + 3, "Sweep frame 0 is too long");
+
+		assertEquals(0, data.size());
+	}
+
+	@Test
+	public void detectsMissingFrame() throws IOException {
+		decoder.startSweep("#BIN 0,1,3");
+		decoder.decode(frame, encode(0, 1.0f, 0, 0, 1.0f), data);
+
+		assertDecodeFails(encode(2, 1.0f, 0, 0, 1.0f), "Sweep frame 1 is missing");
+	}
+}
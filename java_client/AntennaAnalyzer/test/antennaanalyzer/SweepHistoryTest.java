@@ -0,0 +1,103 @@
+/*
+ * SweepHistoryTest
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class SweepHistoryTest {
+
+	/* bytes of one point in SweepData and in an overlay */
+	private static final int POINT_SIZE = 24;
+	private static final int OVERLAY_POINT_SIZE = 16;
+
+	private final SweepHistory history = new SweepHistory(1000 * POINT_SIZE);
+
+	@After
+	public void close() throws IOException {
+		history.close();
+	}
+
+	private static SweepData sweep(int points) {
+		SweepData data = new SweepData();
+
+		for (int index = 0; index < points; index++) {
+			data.add(7000000 + index * 1000, 1.5f, 500, 100, 1.5f);
+		}
+		return data;
+	}
+
+	@Test
+	public void spillsSweepsAboveBudget() throws IOException {
+		int first = history.add("first", sweep(600));
+		int second = history.add("second", sweep(600));
+
+		assertFalse(history.isInMemory(first));
+		assertTrue(history.isInMemory(second));
+		assertEquals(600 * POINT_SIZE, history.getMemoryUsage());
+
+		assertEquals(600, history.get(first).size());
+		assertTrue(history.isInMemory(first));
+		assertFalse(history.isInMemory(second));
+	}
+
+	@Test
+	public void countsOverlaysInBudget() throws IOException {
+		int first = history.add("first", sweep(600));
+
+		assertTrue(history.showOverlay(first));
+		assertEquals(600 * (POINT_SIZE + OVERLAY_POINT_SIZE), history.getMemoryUsage());
+
+		/* the overlay copy stays, the sweep itself is spilled */
+		history.add("second", sweep(300));
+		assertFalse(history.isInMemory(first));
+		assertEquals(600 * OVERLAY_POINT_SIZE + 300 * POINT_SIZE, history.getMemoryUsage());
+
+		history.hideOverlay(first);
+		assertEquals(300 * POINT_SIZE, history.getMemoryUsage());
+	}
+
+	@Test
+	public void refusesOverlaysAboveBudget() throws IOException {
+		int[] ids = new int[3];
+
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = history.add("sweep " + i, sweep(600));
+		}
+
+		assertTrue(history.showOverlay(ids[0]));
+		assertTrue(history.showOverlay(ids[1]));
+		assertFalse(history.showOverlay(ids[2]));
+		assertEquals(1200 * OVERLAY_POINT_SIZE, history.getMemoryUsage());
+
+		history.remove(ids[0]);
+		assertTrue(history.showOverlay(ids[2]));
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * SweepLineParserTest
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class SweepLineParserTest {
+
+	private final SweepLineParser parser = new SweepLineParser();
+	private final SweepData data = new SweepData();
+
+	private boolean parse(String line) {
+		byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+		return parser.parse(bytes, bytes.length, data);
+	}
+
+	@Test
+	public void parsesSweepLine() {
+		assertTrue(parse("7100000, 1.25, 512, 57, 1.234"));
+
+		assertEquals(1, data.size());
+		assertEquals(7100000, data.getFreq(0));
+		assertEquals(1.25f, data.getSWR(0), 1e-6f);
+		assertEquals(512, data.getFwd(0));
+		assertEquals(57, data.getRev(0));
+		assertEquals(1.234f, data.getRawSWR(0), 1e-6f);
+	}
+
+	@Test
+	public void acceptsSpacesAndNegativeNumbers() {
+		assertTrue(parse("\t1000000,1.00 ,-3,  -4 , -0.5  "));
+
+		assertEquals(-3, data.getFwd(0));
+		assertEquals(-4, data.getRev(0));
+		assertEquals(-0.5f, data.getRawSWR(0), 1e-6f);
+	}
+
+	@Test
+	public void acceptsNumbersWithoutFraction() {
+		assertTrue(parse("1000000, 2, 10, 20, 3"));
+
+		assertEquals(2.0f, data.getSWR(0), 0.0f);
+		assertEquals(3.0f, data.getRawSWR(0), 0.0f);
+	}
+
+	@Test
+	public void rejectsInvalidLines() {
+		assertFalse(parse(""));
+		assertFalse(parse("#OK#"));
+		assertFalse(parse("Version: 3.5lf"));
+		assertFalse(parse("7100000, nan, 512, 57, 1.234"));
+		assertFalse(parse("7100000, 1.25, 512, 57"));
+		assertFalse(parse("7100000, 1.25, 512, 57, 1.234, 9"));
+		assertFalse(parse("7100000, 1.25, 512, 57, 1.234x"));
+
+		assertEquals(0, data.size());
+	}
+
+	@Test
+	public void rejectsMissingSeparator() {
+		assertFalse(parse("7100000 1.25, 512, 57, 1.234"));
+		assertFalse(parse("7100000, 1.25, 512 57, 1.234"));
+		assertFalse(parse("7100000, 1.25, 512, 57 1.234"));
+
+		assertEquals(0, data.size());
+	}
+
+	@Test
+	public void rejectsDoubledSeparator() {
+		assertFalse(parse("7100000,, 1.25, 512, 57, 1.234"));
+		assertFalse(parse("7100000, 1.25, 512, , 57, 1.234"));
+
+		assertEquals(0, data.size());
+	}
+
+	@Test
+	public void rejectsLeadingAndTrailingSeparator() {
+		assertFalse(parse(", 7100000, 1.25, 512, 57, 1.234"));
+		assertFalse(parse("7100000, 1.25, 512, 57, 1.234,"));
+
+		assertEquals(0, data.size());
+	}
+
+	@Test
+	public void rejectsTooLongIntegers() {
+		/* more digits than unsigned long or int of Arduino */
+		assertFalse(parse("99999999999, 1.25, 512, 57, 1.234"));
+		assertFalse(parse("7100000, 1.25, 123456, 57, 1.234"));
+		assertFalse(parse("7100000, 1.25, 512, -123456, 1.234"));
+
+		assertEquals(0, data.size());
+	}
+
+	@Test
+	public void rejectsTooLongMantissa() {
+		/* it would overflow the mantissa accumulator */
+		assertFalse(parse("7100000, 12345678901234567890123.25, 512, 57, 1.234"));
+		assertFalse(parse("7100000, 1.25, 512, 57, 1.2345678901234567890123"));
+		assertFalse(parse("7100000, 12345678901.5, 512, 57, 1.234"));
+		assertFalse(parse("7100000, 1.123456, 512, 57, 1.234"));
+
+		assertEquals(0, data.size());
+	}
+
+	@Test
+	public void acceptsLongestNumbers() {
+		assertTrue(parse("4294967295, 4294967040.00, -32768, 32767, 28.99999"));
+
+		assertEquals(4294967295L, data.getFreq(0));
+		assertEquals(-32768, data.getFwd(0));
+		assertEquals(32767, data.getRev(0));
+		assertEquals(28.99999f, data.getRawSWR(0), 1e-6f);
+	}
+
+	@Test
+	public void parsesPartOfBuffer() {
+		byte[] bytes = "1000000, 1.50, 1, 2, 1.60, 99".getBytes(StandardCharsets.US_ASCII);
+
+		assertTrue(parser.parse(bytes, 25, data));
+		assertEquals(1.6f, data.getRawSWR(0), 1e-6f);
+	}
+}
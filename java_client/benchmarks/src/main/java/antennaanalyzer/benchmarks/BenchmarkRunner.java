@@ -0,0 +1,71 @@
+/*
+ * BenchmarkRunner
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with machine-readable results
+ *
+ * It accepts all JMH options (e.g. a benchmark regexp, -p seriesSize=101).
+ * When they are not given, results are written as JSON to jmh-result.json
+ * and the GC profiler adds allocation rate (gc.alloc.rate.norm = bytes per
+ * operation).
+ *
+ * java -jar target/benchmarks.jar [JMH options]
+ */
+public class BenchmarkRunner {
+
+	private static final String RESULT_FILE = "jmh-result.json";
+
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		CommandLineOptions cmdLine = new CommandLineOptions(args);
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdLine);
+
+		if (cmdLine.shouldHelp() || cmdLine.shouldList() || cmdLine.shouldListProfilers()
+				|| cmdLine.shouldListResultFormats()) {
+			new Runner(cmdLine).list();
+			return;
+		}
+
+		if (!cmdLine.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (!cmdLine.getResult().hasValue()) {
+			options.result(RESULT_FILE);
+		}
+		if (cmdLine.getProfilers().isEmpty()) {
+			options.addProfiler(GCProfiler.class);
+		}
+
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * CrosshairBenchmark
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import antennaanalyzer.SWRDataset;
+import antennaanalyzer.SweepData;
+
+/**
+ * Crosshair lookup (SWR at mouse frequency) - score is lookups per second
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrosshairBenchmark {
+
+	private static final int LOOKUPS = 1024;
+
+	@Param({ "101", "10001", "100001" })
+	public int seriesSize;
+
+	private SWRDataset dataset;
+	private final double[] mouseFreq = new double[LOOKUPS];
+
+	@Setup
+	public void setup() {
+		SweepData data = SweepSamples.generatedSweep(seriesSize);
+		Random random = new Random(seriesSize);
+
+		dataset = new SWRDataset("VSWR");
+
+		for (int i = 0; i < data.size(); i++) {
+			dataset.append(0, data.getFreq(i) / 1000.0, data.getSWR(i));
+		}
+
+		double low = dataset.getXValue(0, 0);
+		double high = dataset.getXValue(0, seriesSize - 1);
+
+		for (int i = 0; i < LOOKUPS; i++) {
+			mouseFreq[i] = low + random.nextDouble() * (high - low);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public double interpolateSWR() {
+		double sum = 0;
+
+		for (double freq : mouseFreq) {
+			sum += dataset.interpolateSWR(0, freq);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * SWRGraphBenchmark
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer.benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import antennaanalyzer.SWRGraph;
+import antennaanalyzer.SweepData;
+
+/**
+ * SWRGraph.addSWRData and showMinimum - score is sweeps per second,
+ * secondary result "points" is points per second
+ *
+ * The points are added from the benchmark thread and published to the graph
+ * by showMinimum in Event Dispatch Thread, like during a real sweep.
+ * firstSweep cleans the serie (points are appended), repeatedSweep replaces
+ * the points of the previous sweep in place.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SWRGraphBenchmark {
+
+	@Param({ "101", "10001", "100001" })
+	public int seriesSize;
+
+	private SWRGraph graph;
+	private float[] freq;
+	private float[] swr;
+
+	private final Runnable showMinimum = new Runnable() {
+		@Override
+		public void run() {
+			graph.showMinimum(SWRGraph.SERIE_TYPE.PRIMARY);
+		}
+	};
+
+	@Setup
+	public void setup() throws InvocationTargetException, InterruptedException {
+		SweepData data = SweepSamples.generatedSweep(seriesSize);
+
+		freq = new float[seriesSize];
+		swr = new float[seriesSize];
+
+		/* the graph uses kHz */
+		for (int i = 0; i < seriesSize; i++) {
+			freq[i] = data.getFreq(i) / 1000.0f;
+			swr[i] = data.getSWR(i);
+		}
+
+		SwingUtilities.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {
+				graph = new SWRGraph(1000, 30000, 1, 10);
+			}
+		});
+
+		addSweep();
+	}
+
+	private void addSweep() throws InvocationTargetException, InterruptedException {
+		for (int i = 0; i < seriesSize; i++) {
+			graph.addSWRData(SWRGraph.SERIE_TYPE.PRIMARY, freq[i], swr[i]);
+		}
+		SwingUtilities.invokeAndWait(showMinimum);
+	}
+
+	@Benchmark
+	public void firstSweep(PointCounter counter) throws InvocationTargetException, InterruptedException {
+		graph.cleanSWRData(SWRGraph.SERIE_TYPE.PRIMARY);
+		addSweep();
+		counter.points += seriesSize;
+	}
+
+	@Benchmark
+	public void repeatedSweep(PointCounter counter) throws InvocationTargetException, InterruptedException {
+		graph.startSweep(SWRGraph.SERIE_TYPE.PRIMARY);
+		addSweep();
+		counter.points += seriesSize;
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * SweepLineParserBenchmark
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import antennaanalyzer.SweepData;
+import antennaanalyzer.SweepLineParser;
+
+/**
+ * Parsing of perform_sweep lines - score is lines per second
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SweepLineParserBenchmark {
+
+	private static final int LINES = 1000;
+
+	@Param({ "canned", "generated" })
+	public String source;
+
+	private final SweepLineParser parser = new SweepLineParser();
+	private final SweepData data = new SweepData(LINES);
+	private final byte[][] lines = new byte[LINES][];
+
+	@Setup
+	public void setup() throws IOException {
+		List<String> text = source.equals("canned") ? SweepSamples.cannedLines() : SweepSamples.generatedLines(LINES);
+
+		/* the canned sweep is repeated */
+		for (int i = 0; i < LINES; i++) {
+			lines[i] = text.get(i % text.size()).getBytes(StandardCharsets.US_ASCII);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public SweepData parse() {
+		data.clear();
+
+		for (byte[] line : lines) {
+			if (!parser.parse(line, line.length, data)) {
+				throw new IllegalStateException("Unexpected sweep line");
+			}
+		}
+		return data;
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * SweepSamples
+ *
+ * Author:  Ladislav Foldyna
+ *
+ * Copyright (C) 2018 Ladislav Foldyna
+ *
+ * This file is part of AntennaAnalyzer.
+ *
+ * AntennaAnalyzer is free software: you can redistribute it and/or modify
+ * it under the terms of either the Apache Software License, version 2, or
+ * the GNU Lesser General Public License as published by the Free Software
+ * Foundation, version 3 or above.
+ *
+ * AntennaAnalyzer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of both the GNU Lesser General Public
+ * License and the Apache Software License along with jSerialComm. If not,
+ * see <http://www.gnu.org/licenses/> and <http://www.apache.org/licenses/>.
+ */
+
+package antennaanalyzer.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import antennaanalyzer.SweepData;
+
+/**
+ * Sweep data for benchmarks
+ *
+ * Canned data is a 40m sweep in perform_sweep format (sweep_40m.txt).
+ * Generated data is a resonance curve with noise; the generator uses a
+ * fixed seed, so all runs get the same data.
+ */
+public final class SweepSamples {
+
+	private static final String CANNED_SWEEP = "sweep_40m.txt";
+	private static final long SEED = 20180101L;
+
+	private SweepSamples() {
+	}
+
+	/**
+	 * @return lines of the canned sweep (without line terminators)
+	 * @throws IOException
+	 */
+	public static List<String> cannedLines() throws IOException {
+		List<String> lines = new ArrayList<String>();
+		InputStream in = SweepSamples.class.getResourceAsStream(CANNED_SWEEP);
+
+		if (in == null) {
+			throw new IOException("Missing resource " + CANNED_SWEEP);
+		}
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+
+		try {
+			String line;
+
+			while ((line = reader.readLine()) != null) {
+				if (!line.trim().isEmpty()) {
+					lines.add(line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+
+	/**
+	 * Generates lines in perform_sweep format
+	 *
+	 * @param count
+	 *            number of lines
+	 * @return lines
+	 */
+	public static List<String> generatedLines(int count) {
+		SweepData data = generatedSweep(count);
+		List<String> lines = new ArrayList<String>(count);
+
+		for (int i = 0; i < data.size(); i++) {
+			lines.add(String.format(Locale.ROOT, "%d, %.2f, %d, %d, %.2f", data.getFreq(i), data.getSWR(i),
+					data.getFwd(i), data.getRev(i), data.getRawSWR(i)));
+		}
+		return lines;
+	}
+
+	/**
+	 * Generates a sweep 1-30 MHz with a resonance in the middle
+	 *
+	 * @param points
+	 * @return sweep data
+	 */
+	public static SweepData generatedSweep(int points) {
+		Random random = new Random(SEED);
+		SweepData data = new SweepData(points);
+		long start = 1000000L;
+		long step = 29000000L / Math.max(points - 1, 1);
+		double resonance = start + step * (points / 2);
+
+		for (int i = 0; i < points; i++) {
+			long freq = start + i * step;
+			double detune = (freq - resonance) / 500000.0;
+			float swr = (float) (1.1 + detune * detune + random.nextGaussian() * 0.02);
+			int fwd = 500 + random.nextInt(20);
+			int rev = (int) (fwd * (swr - 1) / (swr + 1));
+
+			data.add(freq, Math.max(swr, 1.0f), fwd, rev, Math.max(swr, 1.0f));
+		}
+		return data;
+	}
+}